@@ -17,9 +17,13 @@
 package com.flipkart.zjsonpatch;
 
 import com.flipkart.zjsonpatch.mapping.*;
-import org.apache.commons.collections4.ListUtils;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * @author Mariusz Sondecki
@@ -29,65 +33,136 @@ public abstract sealed class AbstractJsonDiff permits Jackson3JsonDiff, JsonDiff
 
     private final List<Diff> diffs = new ArrayList<>();
     private final EnumSet<DiffFlags> flags;
-
-    protected AbstractJsonDiff(EnumSet<DiffFlags> flags) {
-        this.flags = flags.clone();
+    private final DiffOptions options;
+    private final DiffBudget budget;
+    private final NodeFingerprints fingerprints = new NodeFingerprints();
+    // diffs whose array index is only valid at their own position in the patch, never merged into moves
+    private final Set<Diff> pinnedDiffs = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Diff, Boolean>()));
+
+    protected AbstractJsonDiff(DiffOptions options, DiffBudget budget) {
+        this.flags = options.getFlags();
+        this.options = options;
+        this.budget = budget;
     }
 
     protected static JsonNodeWrapper getJsonNode(JsonNodeWrapper sourceWrapper, JsonNodeWrapper targetWrapper, AbstractJsonDiff diff, JsonNodeFactoryWrapper factory) {
+        diff.computeDiffs(sourceWrapper, targetWrapper);
+        return diff.getJsonNodes(factory);
+    }
+
+    /**
+     * Same as {@link #getJsonNode(JsonNodeWrapper, JsonNodeWrapper, AbstractJsonDiff, JsonNodeFactoryWrapper)},
+     * returning the typed operations instead of the patch document.
+     */
+    protected static <N> Patch<N> getPatch(JsonNodeWrapper sourceWrapper, JsonNodeWrapper targetWrapper, AbstractJsonDiff diff, JsonNodeFactoryWrapper factory) {
+        diff.computeDiffs(sourceWrapper, targetWrapper);
+        List<PatchOperation<N>> operations = new ArrayList<PatchOperation<N>>(diff.diffs.size());
+        diff.send((operation, from, path, value, fromValue) -> operations.add(new PatchOperation<N>(operation, from, path, value, fromValue)));
+        return new Patch<N>(operations, factory);
+    }
+
+    /**
+     * Same as {@link #getJsonNode(JsonNodeWrapper, JsonNodeWrapper, AbstractJsonDiff, JsonNodeFactoryWrapper)},
+     * handing the operations to {@code sink} instead of building a patch.
+     */
+    protected static void sendDiffs(JsonNodeWrapper sourceWrapper, JsonNodeWrapper targetWrapper, AbstractJsonDiff diff, DiffSink<JsonNodeWrapper> sink) {
+        diff.computeDiffs(sourceWrapper, targetWrapper);
+        diff.send(rendering(sink));
+    }
 
+    /**
+     * Same as {@link #getJsonNode(JsonNodeWrapper, JsonNodeWrapper, AbstractJsonDiff, JsonNodeFactoryWrapper)},
+     * writing the patch array to {@code generator} token by token instead of building it.
+     */
+    protected static void writeDiffs(JsonNodeWrapper sourceWrapper, JsonNodeWrapper targetWrapper, AbstractJsonDiff diff, JsonGeneratorWrapper generator) {
+        diff.computeDiffs(sourceWrapper, targetWrapper);
+        generator.writeStartArray();
+        diff.send(new PatchWriter(generator));
+        generator.writeEndArray();
+        generator.flush();
+    }
+
+    private void computeDiffs(JsonNodeWrapper sourceWrapper, JsonNodeWrapper targetWrapper) {
         if (sourceWrapper == null && targetWrapper != null) {
             // return add node at root pointing to the target
-            diff.diffs.add(Diff.generateDiff(Operation.ADD, diff.getJsonPointerRoot(), targetWrapper));
+            diffs.add(Diff.generateDiff(Operation.ADD, getJsonPointerRoot(), targetWrapper));
         }
         if (sourceWrapper != null && targetWrapper == null) {
             // return remove node at root pointing to the source
-            diff.diffs.add(Diff.generateDiff(Operation.REMOVE, diff.getJsonPointerRoot(), sourceWrapper));
+            diffs.add(Diff.generateDiff(Operation.REMOVE, getJsonPointerRoot(), sourceWrapper));
         }
         if (sourceWrapper != null && targetWrapper != null) {
-            diff.generateDiffs(diff.getJsonPointerRoot(), sourceWrapper, targetWrapper);
-
-            if (!diff.flags.contains(DiffFlags.OMIT_MOVE_OPERATION))
+            // fingerprint both trees up front so every equality check below is a hash comparison
+            fingerprints.hash(sourceWrapper);
+            fingerprints.hash(targetWrapper);
+            ForkJoinPool pool = options.getForkJoinPool();
+            if (pool != null)
+                diffs.addAll(pool.invoke(new SubtreeTask(getJsonPointerRoot(), sourceWrapper, targetWrapper)));
+            else
+                generateDiffs(diffs, getJsonPointerRoot(), sourceWrapper, targetWrapper);
+
+            if (!flags.contains(DiffFlags.OMIT_MOVE_OPERATION))
                 // Merging remove & add to move operation
-                diff.introduceMoveOperation();
+                introduceMoveOperation();
 
-            if (!diff.flags.contains(DiffFlags.OMIT_COPY_OPERATION))
+            if (!flags.contains(DiffFlags.OMIT_COPY_OPERATION))
                 // Introduce copy operation
-                diff.introduceCopyOperation(sourceWrapper, targetWrapper);
+                introduceCopyOperation(sourceWrapper, targetWrapper);
 
-            if (diff.flags.contains(DiffFlags.ADD_EXPLICIT_REMOVE_ADD_ON_REPLACE))
+            if (flags.contains(DiffFlags.ADD_EXPLICIT_REMOVE_ADD_ON_REPLACE))
                 // Split replace into remove and add instructions
-                diff.introduceExplicitRemoveAndAddOperation();
+                introduceExplicitRemoveAndAddOperation();
         }
-        return diff.getJsonNodes(factory);
+    }
+
+    /**
+     * Sends the operations turning the document read from {@code source} into the one read from
+     * {@code target} to {@code sink}, see {@link StreamingDiff}.
+     *
+     * @param treeDiffs creates the differ used for the subtrees that have to be materialized
+     */
+    protected static void streamDiffs(JsonParserWrapper source, JsonParserWrapper target, Supplier<AbstractJsonDiff> treeDiffs,
+                                      DiffOptions options, DiffBudget budget, DiffSink<JsonNodeWrapper> sink) {
+        EnumSet<DiffFlags> flags = options.getFlags();
+        OperationHandler handler = rendering(sink);
+        StreamingDiff streamingDiff = new StreamingDiff(treeDiffs, options, budget, diff -> send(diff, flags, handler));
+        streamingDiff.diff(treeDiffs.get().getJsonPointerRoot(), source, target);
     }
 
     protected abstract AbstractJsonPointer getJsonPointerRoot();
 
     protected abstract AbstractJsonPointer createJsonPointerInstance(List<RefToken> tokens);
 
-    private AbstractJsonPointer getMatchingValuePath(Map<JsonNodeWrapper, AbstractJsonPointer> unchangedValues, JsonNodeWrapper value) {
-        return unchangedValues.get(value);
+    private AbstractJsonPointer getMatchingValuePath(UnchangedValues unchangedValues, JsonNodeWrapper value) {
+        if (fingerprints.nodeCount(value) < options.getCopyCandidateMinNodes())
+            return null;
+        return unchangedValues.find(value);
     }
 
     private void introduceCopyOperation(JsonNodeWrapper source, JsonNodeWrapper target) {
-        Map<JsonNodeWrapper, AbstractJsonPointer> unchangedValues = getUnchangedPart(source, target);
+        UnchangedValues unchangedValues = getUnchangedPart(source, target);
 
-        for (int i = 0; i < diffs.size(); i++) {
-            Diff diff = diffs.get(i);
-            if (Operation.ADD != diff.getOperation()) continue;
+        List<Diff> updatedDiffs = new ArrayList<Diff>(diffs.size());
+        for (Diff diff : diffs) {
+            if (Operation.ADD != diff.getOperation()) {
+                updatedDiffs.add(diff);
+                continue;
+            }
 
             AbstractJsonPointer matchingValuePath = getMatchingValuePath(unchangedValues, diff.getValue());
             if (matchingValuePath != null && isAllowed(matchingValuePath, diff.getPath())) {
                 // Matching value found; replace add with copy
                 if (flags.contains(DiffFlags.EMIT_TEST_OPERATIONS)) {
                     // Prepend test node
-                    diffs.add(i, new Diff(Operation.TEST, matchingValuePath, diff.getValue()));
-                    i++;
+                    updatedDiffs.add(new Diff(Operation.TEST, matchingValuePath, diff.getValue()));
                 }
-                diffs.set(i, new Diff(Operation.COPY, matchingValuePath, diff.getPath()));
+                updatedDiffs.add(new Diff(Operation.COPY, matchingValuePath, diff.getPath()));
+            } else {
+                updatedDiffs.add(diff);
             }
         }
+        diffs.clear();
+        diffs.addAll(updatedDiffs);
     }
 
     private static boolean isNumber(String str) {
@@ -126,16 +201,16 @@ public abstract sealed class AbstractJsonDiff permits Jackson3JsonDiff, JsonDiff
         return !isSame;
     }
 
-    private Map<JsonNodeWrapper, AbstractJsonPointer> getUnchangedPart(JsonNodeWrapper source, JsonNodeWrapper target) {
-        Map<JsonNodeWrapper, AbstractJsonPointer> unchangedValues = new HashMap<JsonNodeWrapper, AbstractJsonPointer>();
+    private UnchangedValues getUnchangedPart(JsonNodeWrapper source, JsonNodeWrapper target) {
+        UnchangedValues unchangedValues = new UnchangedValues();
         computeUnchangedValues(unchangedValues, getJsonPointerRoot(), source, target);
         return unchangedValues;
     }
 
-    private static void computeUnchangedValues(Map<JsonNodeWrapper, AbstractJsonPointer> unchangedValues, AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
-        if (source.equals(target)) {
-            if (!unchangedValues.containsKey(target)) {
-                unchangedValues.put(target, path);
+    private void computeUnchangedValues(UnchangedValues unchangedValues, AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+        if (fingerprints.equivalent(source, target)) {
+            if (fingerprints.nodeCount(target) >= options.getCopyCandidateMinNodes()) {
+                unchangedValues.add(target, path);
             }
             return;
         }
@@ -157,7 +232,29 @@ public abstract sealed class AbstractJsonDiff permits Jackson3JsonDiff, JsonDiff
         }
     }
 
-    private static void computeArray(Map<JsonNodeWrapper, AbstractJsonPointer> unchangedValues, AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+    private void computeArray(UnchangedValues unchangedValues, AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+        String keyField = options.identityField(path);
+        if (keyField != null) {
+            List<JsonNodeWrapper> srcNodes = InternalUtils.toList(source.arrayValue());
+            List<JsonNodeWrapper> targetNodes = InternalUtils.toList(target.arrayValue());
+            KeyedArrayAlignment alignment = KeyedArrayAlignment.of(srcNodes, targetNodes, keyField);
+            if (alignment != null) {
+                // elements move around, only key references stay valid
+                for (int srcIdx = 0; srcIdx < srcNodes.size(); srcIdx++) {
+                    int targetIdx = alignment.targetIdxOf(srcIdx);
+                    if (targetIdx >= 0) {
+                        AbstractJsonPointer currPath = path.append(new KeyRef(keyField, alignment.sourceKey(srcIdx)));
+                        computeUnchangedValues(unchangedValues, currPath, srcNodes.get(srcIdx), targetNodes.get(targetIdx));
+                    }
+                }
+                return;
+            }
+        }
+        if (options.isUnordered(path)) {
+            // elements are removed and appended without regard to their positions
+            return;
+        }
+
         final int size = Math.min(source.size(), target.size());
 
         for (int i = 0; i < size; i++) {
@@ -166,7 +263,7 @@ public abstract sealed class AbstractJsonDiff permits Jackson3JsonDiff, JsonDiff
         }
     }
 
-    private static void computeObject(Map<JsonNodeWrapper, AbstractJsonPointer> unchangedValues, AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+    private void computeObject(UnchangedValues unchangedValues, AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
         final Iterator<String> firstFields = source.fieldNames();
         while (firstFields.hasNext()) {
             String name = firstFields.next();
@@ -177,43 +274,135 @@ public abstract sealed class AbstractJsonDiff permits Jackson3JsonDiff, JsonDiff
         }
     }
 
+    /**
+     * Unchanged subtrees of the target bucketed by fingerprint. Lookups return the first registered
+     * path of an equal value, so duplicates are simply appended.
+     */
+    private final class UnchangedValues {
+        private final Map<Integer, List<UnchangedValue>> buckets = new HashMap<Integer, List<UnchangedValue>>();
+
+        private void add(JsonNodeWrapper value, AbstractJsonPointer path) {
+            int hash = fingerprints.hash(value);
+            List<UnchangedValue> bucket = buckets.get(hash);
+            if (bucket == null) {
+                bucket = new ArrayList<UnchangedValue>(1);
+                buckets.put(hash, bucket);
+            }
+            bucket.add(new UnchangedValue(value, path));
+        }
+
+        private AbstractJsonPointer find(JsonNodeWrapper value) {
+            List<UnchangedValue> bucket = buckets.get(fingerprints.hash(value));
+            if (bucket != null) {
+                for (UnchangedValue candidate : bucket) {
+                    if (fingerprints.equivalent(candidate.value, value))
+                        return candidate.path;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class UnchangedValue {
+        private final JsonNodeWrapper value;
+        private final AbstractJsonPointer path;
+
+        private UnchangedValue(JsonNodeWrapper value, AbstractJsonPointer path) {
+            this.value = value;
+            this.path = path;
+        }
+    }
+
     /**
      * This method merge 2 diffs ( remove then add, or vice versa ) with same value into one Move operation,
      * all the core logic resides here only
+     * <p>
+     * Every diff is paired with the earliest later diff of the opposite kind holding an equal value. Candidates
+     * are looked up through value fingerprints instead of scanning the rest of the list, and paired diffs are
+     * nulled out in place (so indexes stay stable) and dropped at the end.
      */
     private void introduceMoveOperation() {
+        Map<Integer, PendingDiffs> removes = new HashMap<Integer, PendingDiffs>();
+        Map<Integer, PendingDiffs> adds = new HashMap<Integer, PendingDiffs>();
+        ArrayIndexShifts shifts = new ArrayIndexShifts(diffs);
+        for (int i = 0; i < diffs.size(); i++) {
+            Diff diff = diffs.get(i);
+            if (pinnedDiffs.contains(diff))
+                continue;
+            if (Operation.REMOVE == diff.getOperation())
+                PendingDiffs.of(removes, fingerprints.hash(diff.getValue())).indexes.add(i);
+            else if (Operation.ADD == diff.getOperation())
+                PendingDiffs.of(adds, fingerprints.hash(diff.getValue())).indexes.add(i);
+        }
+
         for (int i = 0; i < diffs.size(); i++) {
             Diff diff1 = diffs.get(i);
 
             // if not remove OR add, move to next diff
-            if (!(Operation.REMOVE == diff1.getOperation() ||
+            if (diff1 == null || pinnedDiffs.contains(diff1) || !(Operation.REMOVE == diff1.getOperation() ||
                     Operation.ADD == diff1.getOperation())) {
                 continue;
             }
 
-            for (int j = i + 1; j < diffs.size(); j++) {
-                Diff diff2 = diffs.get(j);
-                if (!diff1.getValue().equals(diff2.getValue())) {
-                    continue;
-                }
+            Map<Integer, PendingDiffs> candidates = Operation.REMOVE == diff1.getOperation() ? adds : removes;
+            int j = takeEarliestEquivalent(candidates.get(fingerprints.hash(diff1.getValue())), i, diff1.getValue());
+            if (j < 0) {
+                continue;
+            }
 
-                Diff moveDiff = null;
-                if (Operation.REMOVE == diff1.getOperation() &&
-                        Operation.ADD == diff2.getOperation()) {
-                    AbstractJsonPointer relativePath = computeRelativePath(diff2.getPath(), i + 1, j - 1, diffs);
-                    moveDiff = new Diff(Operation.MOVE, diff1.getPath(), relativePath);
+            Diff diff2 = diffs.get(j);
+            Diff moveDiff;
+            if (Operation.REMOVE == diff1.getOperation()) {
+                AbstractJsonPointer relativePath = computeRelativePath(diff2.getPath(), i + 1, j - 1, shifts);
+                moveDiff = new Diff(Operation.MOVE, diff1.getPath(), relativePath);
+            } else {
+                AbstractJsonPointer relativePath = computeRelativePath(diff2.getPath(), i, j - 1, shifts); // diff1's add should also be considered
+                moveDiff = new Diff(Operation.MOVE, relativePath, diff1.getPath());
+            }
+            shifts.remove(i, diff1);
+            shifts.remove(j, diff2);
+            diffs.set(j, null);
+            diffs.set(i, moveDiff);
+        }
+        diffs.removeIf(Objects::isNull);
+    }
 
-                } else if (Operation.ADD == diff1.getOperation() &&
-                        Operation.REMOVE == diff2.getOperation()) {
-                    AbstractJsonPointer relativePath = computeRelativePath(diff2.getPath(), i, j - 1, diffs); // diff1's add should also be considered
-                    moveDiff = new Diff(Operation.MOVE, relativePath, diff1.getPath());
-                }
-                if (moveDiff != null) {
-                    diffs.remove(j);
-                    diffs.set(i, moveDiff);
-                    break;
-                }
+    private int takeEarliestEquivalent(PendingDiffs pending, int after, JsonNodeWrapper value) {
+        if (pending == null) {
+            return -1;
+        }
+        // indexes at or before the current diff, and already paired ones, can never match again
+        while (pending.head < pending.indexes.size()) {
+            int j = pending.indexes.get(pending.head);
+            if (j > after && diffs.get(j) != null) {
+                break;
             }
+            pending.head++;
+        }
+        for (int k = pending.head; k < pending.indexes.size(); k++) {
+            int j = pending.indexes.get(k);
+            Diff candidate = diffs.get(j);
+            if (candidate != null && fingerprints.equivalent(value, candidate.getValue())) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Indexes of not yet paired ADD or REMOVE diffs sharing a value fingerprint, in patch order.
+     */
+    private static final class PendingDiffs {
+        private final List<Integer> indexes = new ArrayList<Integer>();
+        private int head;
+
+        private static PendingDiffs of(Map<Integer, PendingDiffs> buckets, int hash) {
+            PendingDiffs pending = buckets.get(hash);
+            if (pending == null) {
+                pending = new PendingDiffs();
+                buckets.put(hash, pending);
+            }
+            return pending;
         }
     }
 
@@ -239,209 +428,325 @@ public abstract sealed class AbstractJsonDiff permits Jackson3JsonDiff, JsonDiff
 
     //Note : only to be used for arrays
     //Finds the longest common Ancestor ending at Array
-    private AbstractJsonPointer computeRelativePath(AbstractJsonPointer path, int startIdx, int endIdx, List<Diff> diffs) {
-        List<Integer> counters = new ArrayList<Integer>(path.size());
-        for (int i = 0; i < path.size(); i++) {
-            counters.add(0);
-        }
-
-        for (int i = startIdx; i <= endIdx; i++) {
-            Diff diff = diffs.get(i);
-            //Adjust relative path according to #ADD and #Remove
-            if (Operation.ADD == diff.getOperation() || Operation.REMOVE == diff.getOperation()) {
-                updatePath(path, diff, counters);
-            }
-        }
-        return updatePathWithCounters(counters, path);
+    private AbstractJsonPointer computeRelativePath(AbstractJsonPointer path, int startIdx, int endIdx, ArrayIndexShifts shifts) {
+        int[] counters = shifts.shifts(path, startIdx, endIdx);
+        return counters == null ? path : updatePathWithCounters(counters, path);
     }
 
-    private AbstractJsonPointer updatePathWithCounters(List<Integer> counters, AbstractJsonPointer path) {
+    private AbstractJsonPointer updatePathWithCounters(int[] counters, AbstractJsonPointer path) {
         List<RefToken> tokens = path.decompose();
-        for (int i = 0; i < counters.size(); i++) {
-            int value = counters.get(i);
-            if (value != 0) {
+        for (int i = 0; i < counters.length; i++) {
+            int value = counters[i];
+            // key references do not depend on the position of the element
+            if (value != 0 && tokens.get(i).isArrayIndex()) {
                 int currValue = tokens.get(i).getIndex();
-                tokens.set(i, RefToken.parse(Integer.toString(currValue + value)));
+                tokens.set(i, indexToken(currValue + value));
             }
         }
         return createJsonPointerInstance(tokens);
     }
 
-    private static void updatePath(AbstractJsonPointer path, Diff pseudo, List<Integer> counters) {
-        //find longest common prefix of both the paths
-
-        if (pseudo.getPath().size() <= path.size()) {
-            int idx = -1;
-            for (int i = 0; i < pseudo.getPath().size() - 1; i++) {
-                if (pseudo.getPath().get(i).equals(path.get(i))) {
-                    idx = i;
-                } else {
-                    break;
-                }
-            }
-            if (idx == pseudo.getPath().size() - 2) {
-                if (pseudo.getPath().get(pseudo.getPath().size() - 1).isArrayIndex()) {
-                    updateCounters(pseudo, pseudo.getPath().size() - 1, counters);
-                }
-            }
-        }
-    }
-
-    private static void updateCounters(Diff pseudo, int idx, List<Integer> counters) {
-        if (Operation.ADD == pseudo.getOperation()) {
-            counters.set(idx, counters.get(idx) - 1);
-        } else {
-            if (Operation.REMOVE == pseudo.getOperation()) {
-                counters.set(idx, counters.get(idx) + 1);
-            }
-        }
+    // same token as RefToken.parse would give, without going through its patterns
+    private static RefToken indexToken(int index) {
+        return index >= 0 ? new RefToken(Integer.toString(index), index, null) : RefToken.parse(Integer.toString(index));
     }
 
     private JsonNodeWrapper getJsonNodes(JsonNodeFactoryWrapper factory) {
         final ArrayNodeWrapper patch = factory.arrayNode();
+        send(rendering(patchBuilder(factory, patch::add)));
+        return patch;
+    }
+
+    private void send(OperationHandler handler) {
         for (Diff diff : diffs) {
-            ObjectNodeWrapper jsonNode = getJsonNode(factory, diff, flags);
-            patch.add(jsonNode);
+            send(diff, flags, handler);
         }
-        return patch;
     }
 
-    private static ObjectNodeWrapper getJsonNode(JsonNodeFactoryWrapper FACTORY, Diff diff, EnumSet<DiffFlags> flags) {
-        ObjectNodeWrapper jsonNode = FACTORY.objectNode();
-        jsonNode.put(Constants.OP, FACTORY.textNode(diff.getOperation().rfcName()));
+    /**
+     * Receives the members of one operation, with its pointers not yet rendered to strings.
+     */
+    interface OperationHandler {
+        void accept(Operation operation, AbstractJsonPointer from, AbstractJsonPointer path, JsonNodeWrapper value, JsonNodeWrapper fromValue);
+    }
 
+    static OperationHandler rendering(DiffSink<JsonNodeWrapper> sink) {
+        return (operation, from, path, value, fromValue) ->
+                sink.accept(operation, from != null ? from.toString() : null, path.toString(), value, fromValue);
+    }
+
+    /**
+     * @return a sink turning each operation into its patch object, in the member order of the patch
+     */
+    static DiffSink<JsonNodeWrapper> patchBuilder(JsonNodeFactoryWrapper factory, Consumer<? super ObjectNodeWrapper> operations) {
+        return (operation, from, path, value, fromValue) -> {
+            ObjectNodeWrapper jsonNode = factory.objectNode();
+            jsonNode.put(Constants.OP, factory.textNode(operation.rfcName()));
+            if (from != null)
+                jsonNode.put(Constants.FROM, factory.textNode(from));
+            if (fromValue != null)
+                jsonNode.set(Constants.FROM_VALUE, fromValue);
+            jsonNode.put(Constants.PATH, factory.textNode(path));
+            if (value != null)
+                jsonNode.set(Constants.VALUE, value);
+            operations.accept(jsonNode);
+        };
+    }
+
+    static void send(Diff diff, EnumSet<DiffFlags> flags, OperationHandler handler) {
         switch (diff.getOperation()) {
             case MOVE:
             case COPY:
-                jsonNode.put(Constants.FROM, FACTORY.textNode(diff.getPath().toString()));    // required {from} only in case of Move Operation
-                jsonNode.put(Constants.PATH, FACTORY.textNode(diff.getToPath().toString()));  // destination Path
+                // required {from} only in case of Move Operation, path is the destination
+                handler.accept(diff.getOperation(), diff.getPath(), diff.getToPath(), null, null);
                 break;
 
             case REMOVE:
-                jsonNode.put(Constants.PATH, FACTORY.textNode(diff.getPath().toString()));
-                if (!flags.contains(DiffFlags.OMIT_VALUE_ON_REMOVE))
-                    jsonNode.set(Constants.VALUE, diff.getValue());
+                handler.accept(diff.getOperation(), null, diff.getPath(),
+                        flags.contains(DiffFlags.OMIT_VALUE_ON_REMOVE) ? null : diff.getValue(), null);
                 break;
 
             case REPLACE:
-                if (flags.contains(DiffFlags.ADD_ORIGINAL_VALUE_ON_REPLACE)) {
-                    jsonNode.set(Constants.FROM_VALUE, diff.getSrcValue());
-                }
+                handler.accept(diff.getOperation(), null, diff.getPath(), diff.getValue(),
+                        flags.contains(DiffFlags.ADD_ORIGINAL_VALUE_ON_REPLACE) ? diff.getSrcValue() : null);
+                break;
+
             case ADD:
             case TEST:
-                jsonNode.put(Constants.PATH, FACTORY.textNode(diff.getPath().toString()));
-                jsonNode.set(Constants.VALUE, diff.getValue());
+                handler.accept(diff.getOperation(), null, diff.getPath(), diff.getValue(), null);
                 break;
 
             default:
                 // Safety net
                 throw new IllegalArgumentException("Unknown operation specified:" + diff.getOperation());
         }
+    }
 
-        return jsonNode;
+    /**
+     * Diffs two subtrees that were read out of a token stream. Only the element-wise diff is run,
+     * the move and copy passes need the whole patch.
+     */
+    List<Diff> diffSubtree(AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+        fingerprints.hash(source);
+        fingerprints.hash(target);
+        List<Diff> buffer = new ArrayList<Diff>();
+        generateDiffs(buffer, path, source, target);
+        return buffer;
     }
 
-    private void generateDiffs(AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
-        if (!source.equals(target)) {
+    private void generateDiffs(List<Diff> buffer, AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+        budget.checkCancelled();
+        if (!fingerprints.equivalent(source, target)) {
             final NodeType sourceType = NodeType.getNodeType(source);
             final NodeType targetType = NodeType.getNodeType(target);
 
             if (sourceType == NodeType.ARRAY && targetType == NodeType.ARRAY) {
                 //both are arrays
-                compareArray(path, source, target);
+                compareArray(buffer, path, source, target);
             } else if (sourceType == NodeType.OBJECT && targetType == NodeType.OBJECT) {
                 //both are json
-                compareObjects(path, source, target);
+                compareObjects(buffer, path, source, target);
             } else {
                 //can be replaced
                 if (flags.contains(DiffFlags.EMIT_TEST_OPERATIONS))
-                    diffs.add(new Diff(Operation.TEST, path, source));
-                diffs.add(Diff.generateDiff(Operation.REPLACE, path, source, target));
+                    buffer.add(new Diff(Operation.TEST, path, source));
+                buffer.add(Diff.generateDiff(Operation.REPLACE, path, source, target));
             }
         }
     }
 
-    private void compareArray(AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
-        List<JsonNodeWrapper> lcs = getLCS(source, target);
-        int srcIdx = 0;
-        int targetIdx = 0;
-        int lcsIdx = 0;
-        int srcSize = source.size();
-        int targetSize = target.size();
-        int lcsSize = lcs.size();
+    private void compareArray(List<Diff> buffer, AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+        final List<JsonNodeWrapper> srcNodes = InternalUtils.toList(source.arrayValue());
+        final List<JsonNodeWrapper> targetNodes = InternalUtils.toList(target.arrayValue());
 
-        int pos = 0;
-        while (lcsIdx < lcsSize) {
-            JsonNodeWrapper lcsNode = lcs.get(lcsIdx);
-            JsonNodeWrapper srcNode = source.get(srcIdx);
-            JsonNodeWrapper targetNode = target.get(targetIdx);
+        String keyField = options.identityField(path);
+        if (keyField != null) {
+            KeyedArrayAlignment alignment = KeyedArrayAlignment.of(srcNodes, targetNodes, keyField);
+            if (alignment != null) {
+                compareKeyedArray(buffer, path, srcNodes, targetNodes, keyField, alignment);
+                return;
+            }
+        }
+        if (options.isUnordered(path)) {
+            compareUnorderedArray(buffer, path, srcNodes, targetNodes);
+            return;
+        }
 
+        // equal leading and trailing runs produce no operations, only the middle window needs an edit script
+        int prefix = 0;
+        int srcEnd = srcNodes.size();
+        int targetEnd = targetNodes.size();
+        while (prefix < srcEnd && prefix < targetEnd && fingerprints.equivalent(srcNodes.get(prefix), targetNodes.get(prefix)))
+            prefix++;
+        while (srcEnd > prefix && targetEnd > prefix && fingerprints.equivalent(srcNodes.get(srcEnd - 1), targetNodes.get(targetEnd - 1))) {
+            srcEnd--;
+            targetEnd--;
+        }
 
-            if (lcsNode.equals(srcNode) && lcsNode.equals(targetNode)) { // Both are same as lcs node, nothing to do here
-                srcIdx++;
-                targetIdx++;
-                lcsIdx++;
-                pos++;
+        final int start = prefix;
+        int[] matches = new MyersDiff(srcEnd - start, targetEnd - start,
+                (srcIdx, targetIdx) -> fingerprints.equivalent(srcNodes.get(start + srcIdx), targetNodes.get(start + targetIdx)),
+                options.getLinearSpaceThreshold(), budget).matches();
+        if (matches == null) {
+            // out of budget, give up on aligning the elements
+            budget.checkCancelled();
+            if (flags.contains(DiffFlags.EMIT_TEST_OPERATIONS))
+                buffer.add(new Diff(Operation.TEST, path, source));
+            buffer.add(Diff.generateDiff(Operation.REPLACE, path, source, target));
+            return;
+        }
+
+        SubtreeDiffs children = new SubtreeDiffs(buffer);
+        int srcIdx = start;
+        int targetIdx = start;
+        int pos = start;
+        for (int i = 0; i < matches.length; i += 2) {
+            // elements between two matches are unequal to the common subsequence
+            pos = compareUnmatched(buffer, children, path, srcNodes, srcIdx, start + matches[i], targetNodes, targetIdx, start + matches[i + 1], pos);
+            srcIdx = start + matches[i] + 1;
+            targetIdx = start + matches[i + 1] + 1;
+            pos++;
+        }
+        compareUnmatched(buffer, children, path, srcNodes, srcIdx, srcEnd, targetNodes, targetIdx, targetEnd, pos);
+        children.join();
+    }
+
+    private void compareKeyedArray(List<Diff> buffer, AbstractJsonPointer path, List<JsonNodeWrapper> source, List<JsonNodeWrapper> target,
+                                   String keyField, KeyedArrayAlignment alignment) {
+        for (int srcIdx = 0; srcIdx < source.size(); srcIdx++) {
+            if (alignment.targetIdxOf(srcIdx) < 0) {
+                AbstractJsonPointer currPath = path.append(new KeyRef(keyField, alignment.sourceKey(srcIdx)));
+                if (flags.contains(DiffFlags.EMIT_TEST_OPERATIONS))
+                    buffer.add(new Diff(Operation.TEST, currPath, source.get(srcIdx)));
+                buffer.add(Diff.generateDiff(Operation.REMOVE, currPath, source.get(srcIdx)));
+            }
+        }
+        SubtreeDiffs children = new SubtreeDiffs(buffer);
+        for (int srcIdx = 0; srcIdx < source.size(); srcIdx++) {
+            int targetIdx = alignment.targetIdxOf(srcIdx);
+            if (targetIdx >= 0) {
+                AbstractJsonPointer currPath = path.append(new KeyRef(keyField, alignment.sourceKey(srcIdx)));
+                children.diff(currPath, source.get(srcIdx), target.get(targetIdx));
+            }
+        }
+        children.join();
+
+        int[] placements = alignment.placements();
+        for (int targetIdx = 0; targetIdx < target.size(); targetIdx++) {
+            if (placements[targetIdx] < 0)
+                continue;
+            AbstractJsonPointer currPath = path.append(placements[targetIdx]);
+            if (alignment.sourceIdxOf(targetIdx) >= 0) {
+                AbstractJsonPointer fromPath = path.append(new KeyRef(keyField, alignment.targetKey(targetIdx)));
+                buffer.add(new Diff(Operation.MOVE, fromPath, currPath));
             } else {
-                if (lcsNode.equals(srcNode)) { // src node is same as lcs, but not targetNode
-                    //addition
-                    AbstractJsonPointer currPath = path.append(pos);
-                    diffs.add(Diff.generateDiff(Operation.ADD, currPath, targetNode));
-                    pos++;
-                    targetIdx++;
-                } else if (lcsNode.equals(targetNode)) { //targetNode node is same as lcs, but not src
-                    //removal,
-                    AbstractJsonPointer currPath = path.append(pos);
-                    if (flags.contains(DiffFlags.EMIT_TEST_OPERATIONS))
-                        diffs.add(new Diff(Operation.TEST, currPath, srcNode));
-                    diffs.add(Diff.generateDiff(Operation.REMOVE, currPath, srcNode));
-                    srcIdx++;
-                } else {
-                    AbstractJsonPointer currPath = path.append(pos);
-                    //both are unequal to lcs node
-                    generateDiffs(currPath, srcNode, targetNode);
-                    srcIdx++;
-                    targetIdx++;
-                    pos++;
-                }
+                Diff diff = Diff.generateDiff(Operation.ADD, currPath, addedValue(target.get(targetIdx)));
+                pinnedDiffs.add(diff);
+                buffer.add(diff);
+            }
+        }
+    }
+
+    private void compareUnorderedArray(List<Diff> buffer, AbstractJsonPointer path, List<JsonNodeWrapper> source, List<JsonNodeWrapper> target) {
+        // target elements grouped by value, each group holding the indexes not yet matched by a source element
+        Map<Integer, List<ValueGroup>> groups = new HashMap<Integer, List<ValueGroup>>();
+        for (int targetIdx = 0; targetIdx < target.size(); targetIdx++) {
+            JsonNodeWrapper value = target.get(targetIdx);
+            List<ValueGroup> bucket = groups.get(fingerprints.hash(value));
+            if (bucket == null) {
+                bucket = new ArrayList<ValueGroup>(1);
+                groups.put(fingerprints.hash(value), bucket);
+            }
+            ValueGroup group = findGroup(bucket, value);
+            if (group == null) {
+                group = new ValueGroup(value);
+                bucket.add(group);
+            }
+            group.indexes.add(targetIdx);
+        }
+
+        boolean[] matched = new boolean[target.size()];
+        int pos = 0;
+        for (JsonNodeWrapper value : source) {
+            List<ValueGroup> bucket = groups.get(fingerprints.hash(value));
+            ValueGroup group = bucket != null ? findGroup(bucket, value) : null;
+            if (group != null && !group.indexes.isEmpty()) {
+                matched[group.indexes.poll()] = true;
+                pos++;
+                continue;
             }
+            AbstractJsonPointer currPath = path.append(pos);
+            if (flags.contains(DiffFlags.EMIT_TEST_OPERATIONS))
+                buffer.add(new Diff(Operation.TEST, currPath, value));
+            buffer.add(Diff.generateDiff(Operation.REMOVE, currPath, value));
         }
 
-        while ((srcIdx < srcSize) && (targetIdx < targetSize)) {
-            JsonNodeWrapper srcNode = source.get(srcIdx);
-            JsonNodeWrapper targetNode = target.get(targetIdx);
+        for (int targetIdx = 0; targetIdx < target.size(); targetIdx++) {
+            if (!matched[targetIdx]) {
+                AbstractJsonPointer currPath = path.append(pos++);
+                buffer.add(Diff.generateDiff(Operation.ADD, currPath, addedValue(target.get(targetIdx))));
+            }
+        }
+    }
+
+    private ValueGroup findGroup(List<ValueGroup> bucket, JsonNodeWrapper value) {
+        for (ValueGroup group : bucket) {
+            if (fingerprints.equivalent(group.value, value))
+                return group;
+        }
+        return null;
+    }
+
+    private static final class ValueGroup {
+        private final JsonNodeWrapper value;
+        private final Deque<Integer> indexes = new ArrayDeque<Integer>();
+
+        private ValueGroup(JsonNodeWrapper value) {
+            this.value = value;
+        }
+    }
+
+    private int compareUnmatched(List<Diff> buffer, SubtreeDiffs children, AbstractJsonPointer path, List<JsonNodeWrapper> source, int srcIdx, int srcEnd,
+                                 List<JsonNodeWrapper> target, int targetIdx, int targetEnd, int pos) {
+        while ((srcIdx < srcEnd) && (targetIdx < targetEnd)) {
             AbstractJsonPointer currPath = path.append(pos);
-            generateDiffs(currPath, srcNode, targetNode);
+            children.diff(currPath, source.get(srcIdx), target.get(targetIdx));
             srcIdx++;
             targetIdx++;
             pos++;
         }
-        pos = addRemaining(path, target, pos, targetIdx, targetSize);
-        removeRemaining(path, pos, srcIdx, srcSize, source);
+        pos = addRemaining(buffer, path, target, pos, targetIdx, targetEnd);
+        removeRemaining(buffer, path, pos, srcIdx, srcEnd, source);
+        return pos;
     }
 
-    private void removeRemaining(AbstractJsonPointer path, int pos, int srcIdx, int srcSize, JsonNodeWrapper source) {
+    private void removeRemaining(List<Diff> buffer, AbstractJsonPointer path, int pos, int srcIdx, int srcSize, List<JsonNodeWrapper> source) {
         while (srcIdx < srcSize) {
             AbstractJsonPointer currPath = path.append(pos);
             if (flags.contains(DiffFlags.EMIT_TEST_OPERATIONS))
-                diffs.add(new Diff(Operation.TEST, currPath, source.get(srcIdx)));
-            diffs.add(Diff.generateDiff(Operation.REMOVE, currPath, source.get(srcIdx)));
+                buffer.add(new Diff(Operation.TEST, currPath, source.get(srcIdx)));
+            buffer.add(Diff.generateDiff(Operation.REMOVE, currPath, source.get(srcIdx)));
             srcIdx++;
         }
     }
 
-    private int addRemaining(AbstractJsonPointer path, JsonNodeWrapper target, int pos, int targetIdx, int targetSize) {
+    private int addRemaining(List<Diff> buffer, AbstractJsonPointer path, List<JsonNodeWrapper> target, int pos, int targetIdx, int targetSize) {
         while (targetIdx < targetSize) {
             JsonNodeWrapper jsonNode = target.get(targetIdx);
             AbstractJsonPointer currPath = path.append(pos);
-            diffs.add(Diff.generateDiff(Operation.ADD, currPath, jsonNode.deepCopy()));
+            buffer.add(Diff.generateDiff(Operation.ADD, currPath, addedValue(jsonNode)));
             pos++;
             targetIdx++;
         }
         return pos;
     }
 
-    private void compareObjects(AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+    private JsonNodeWrapper addedValue(JsonNodeWrapper targetElement) {
+        return flags.contains(DiffFlags.TRANSFER_VALUE_OWNERSHIP) ? targetElement : targetElement.deepCopy();
+    }
+
+    private void compareObjects(List<Diff> buffer, AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+        SubtreeDiffs children = new SubtreeDiffs(buffer);
         Iterator<String> keysFromSrc = source.fieldNames();
         while (keysFromSrc.hasNext()) {
             String key = keysFromSrc.next();
@@ -449,26 +754,89 @@ public abstract sealed class AbstractJsonDiff permits Jackson3JsonDiff, JsonDiff
                 //remove case
                 AbstractJsonPointer currPath = path.append(key);
                 if (flags.contains(DiffFlags.EMIT_TEST_OPERATIONS))
-                    diffs.add(new Diff(Operation.TEST, currPath, source.get(key)));
-                diffs.add(Diff.generateDiff(Operation.REMOVE, currPath, source.get(key)));
+                    buffer.add(new Diff(Operation.TEST, currPath, source.get(key)));
+                buffer.add(Diff.generateDiff(Operation.REMOVE, currPath, source.get(key)));
                 continue;
             }
             AbstractJsonPointer currPath = path.append(key);
-            generateDiffs(currPath, source.get(key), target.get(key));
+            children.diff(currPath, source.get(key), target.get(key));
         }
+        children.join();
         Iterator<String> keysFromTarget = target.fieldNames();
         while (keysFromTarget.hasNext()) {
             String key = keysFromTarget.next();
             if (!source.has(key)) {
                 //add case
                 AbstractJsonPointer currPath = path.append(key);
-                diffs.add(Diff.generateDiff(Operation.ADD, currPath, target.get(key)));
+                buffer.add(Diff.generateDiff(Operation.ADD, currPath, target.get(key)));
+            }
+        }
+    }
+
+    /**
+     * Diffs of the children of one container, in the order they are requested. When running in a
+     * pool, children of at least {@link DiffOptions#getParallelThreshold()} nodes are forked as separate
+     * tasks and everything else is written straight into the parent's buffer; {@link #join()} splices
+     * the forked results back where they were requested, so the patch does not depend on scheduling.
+     */
+    private final class SubtreeDiffs {
+        private final List<Diff> buffer;
+        private List<Integer> positions;
+        private List<ForkJoinTask<List<Diff>>> tasks;
+
+        private SubtreeDiffs(List<Diff> buffer) {
+            this.buffer = buffer;
+        }
+
+        private void diff(AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+            if (options.getForkJoinPool() != null && ForkJoinTask.inForkJoinPool()
+                    && fingerprints.nodeCount(source) + fingerprints.nodeCount(target) >= options.getParallelThreshold()) {
+                if (tasks == null) {
+                    positions = new ArrayList<Integer>();
+                    tasks = new ArrayList<ForkJoinTask<List<Diff>>>();
+                }
+                positions.add(buffer.size());
+                tasks.add(new SubtreeTask(path, source, target).fork());
+            } else {
+                generateDiffs(buffer, path, source, target);
+            }
+        }
+
+        private void join() {
+            if (tasks == null)
+                return;
+            // only what this container wrote since its first fork is moved, not the diffs before it
+            int first = positions.get(0);
+            List<Diff> written = buffer.subList(first, buffer.size());
+            List<Diff> tail = new ArrayList<Diff>(written);
+            written.clear();
+            int from = first;
+            for (int i = 0; i < tasks.size(); i++) {
+                int position = positions.get(i);
+                buffer.addAll(tail.subList(from - first, position - first));
+                buffer.addAll(tasks.get(i).join());
+                from = position;
             }
+            buffer.addAll(tail.subList(from - first, tail.size()));
         }
     }
 
-    private static List<JsonNodeWrapper> getLCS(final JsonNodeWrapper first, final JsonNodeWrapper second) {
-        return ListUtils.longestCommonSubsequence(InternalUtils.toList(first.arrayValue()), InternalUtils.toList(second.arrayValue()));
+    private final class SubtreeTask extends RecursiveTask<List<Diff>> {
+        private final AbstractJsonPointer path;
+        private final JsonNodeWrapper source;
+        private final JsonNodeWrapper target;
+
+        private SubtreeTask(AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+            this.path = path;
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        protected List<Diff> compute() {
+            List<Diff> buffer = new ArrayList<Diff>();
+            generateDiffs(buffer, path, source, target);
+            return buffer;
+        }
     }
 }
-
@@ -18,9 +18,13 @@ package com.flipkart.zjsonpatch;
 
 import com.flipkart.zjsonpatch.mapping.JsonNodeFactoryWrapper;
 import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonParserWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonTokenWrapper;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * @author Mariusz Sondecki
@@ -61,66 +65,192 @@ public abstract sealed class AbstractJsonPatch permits JsonPatch, Jackson3JsonPa
 
         if (!patch.isArray())
             throw new InvalidJsonPatchException("Invalid JSON Patch payload (not an array)");
+        boolean transferOwnership = flags.contains(CompatibilityFlags.TRANSFER_VALUE_OWNERSHIP);
         Iterator<JsonNodeWrapper> operations = patch.iterator();
-        while (operations.hasNext()) {
-            JsonNodeWrapper jsonNode = operations.next();
-            if (!jsonNode.isObject()) throw new InvalidJsonPatchException("Invalid JSON Patch payload (not an object)");
-            Operation operation = Operation.fromRfcName(getPatchStringAttr(jsonNode, Constants.OP).textValue());
-            JsonPointer path = JsonPointer.parse(getPatchStringAttr(jsonNode, Constants.PATH).textValue());
-
-            try {
-                switch (operation) {
-                    case REMOVE: {
-                        processor.remove(path);
-                        break;
-                    }
+        try {
+            while (operations.hasNext()) {
+                JsonNodeWrapper jsonNode = operations.next();
+                processOperation(jsonNode, processor, flags, factory, transferOwnership);
+            }
+        } finally {
+            processor.flush();
+        }
+    }
 
-                    case ADD: {
-                        JsonNodeWrapper value;
-                        if (!flags.contains(CompatibilityFlags.MISSING_VALUES_AS_NULLS))
-                            value = getPatchAttr(jsonNode, Constants.VALUE);
-                        else
-                            value = getPatchAttrWithDefault(jsonNode, Constants.VALUE, factory.nullNode());
-                        processor.add(path, value.deepCopy());
-                        break;
-                    }
+    /**
+     * Same as {@link #process(JsonNodeWrapper, JsonPatchProcessor, EnumSet, JsonNodeFactoryWrapper)} for a patch read
+     * from a token stream, one operation at a time: each operation is read into a tree, handed to {@code processor}
+     * and dropped before the next one is read, so only the largest operation is ever held in memory. The operations
+     * before an invalid one have already been processed when it is reported.
+     * <p>
+     * The parser may be positioned before the first token or on it; it is left on the end of the patch array.
+     */
+    protected static void process(JsonParserWrapper patch, JsonPatchProcessor processor, EnumSet<CompatibilityFlags> flags, JsonNodeFactoryWrapper factory)
+            throws InvalidJsonPatchException {
 
-                    case REPLACE: {
-                        JsonNodeWrapper value;
-                        if (!flags.contains(CompatibilityFlags.MISSING_VALUES_AS_NULLS))
-                            value = getPatchAttr(jsonNode, Constants.VALUE);
-                        else
-                            value = getPatchAttrWithDefault(jsonNode, Constants.VALUE, factory.nullNode());
-                        processor.replace(path, value.deepCopy());
-                        break;
-                    }
+        JsonTokenWrapper token = patch.currentToken() != null ? patch.currentToken() : patch.nextToken();
+        if (token != JsonTokenWrapper.START_ARRAY)
+            throw new InvalidJsonPatchException("Invalid JSON Patch payload (not an array)");
+        try {
+            while ((token = patch.nextToken()) != JsonTokenWrapper.END_ARRAY) {
+                if (token == null)
+                    throw new InvalidJsonPatchException("Invalid JSON Patch payload (unterminated array)");
+                if (token != JsonTokenWrapper.START_OBJECT)
+                    throw new InvalidJsonPatchException("Invalid JSON Patch payload (not an object)");
+                // values of an operation read for this call alone are never seen by anyone else
+                processOperation(patch.readTree(), processor, flags, factory, true);
+            }
+        } finally {
+            processor.flush();
+        }
+    }
 
-                    case MOVE: {
-                        JsonPointer fromPath = JsonPointer.parse(getPatchStringAttr(jsonNode, Constants.FROM).textValue());
-                        processor.move(fromPath, path);
-                        break;
-                    }
+    private static void processOperation(JsonNodeWrapper jsonNode, JsonPatchProcessor processor, EnumSet<CompatibilityFlags> flags,
+                                         JsonNodeFactoryWrapper factory, boolean transferOwnership) {
+        if (!jsonNode.isObject()) throw new InvalidJsonPatchException("Invalid JSON Patch payload (not an object)");
+        Operation operation = Operation.fromRfcName(getPatchStringAttr(jsonNode, Constants.OP).textValue());
+        JsonPointer path = JsonPointer.parse(getPatchStringAttr(jsonNode, Constants.PATH).textValue());
 
-                    case COPY: {
-                        JsonPointer fromPath = JsonPointer.parse(getPatchStringAttr(jsonNode, Constants.FROM).textValue());
-                        processor.copy(fromPath, path);
-                        break;
-                    }
+        try {
+            switch (operation) {
+                case REMOVE: {
+                    processor.remove(path);
+                    break;
+                }
 
-                    case TEST: {
-                        JsonNodeWrapper value;
-                        if (!flags.contains(CompatibilityFlags.MISSING_VALUES_AS_NULLS))
-                            value = getPatchAttr(jsonNode, Constants.VALUE);
-                        else
-                            value = getPatchAttrWithDefault(jsonNode, Constants.VALUE, factory.nullNode());
-                        processor.test(path, value.deepCopy());
-                        break;
-                    }
+                case ADD: {
+                    JsonNodeWrapper value;
+                    if (!flags.contains(CompatibilityFlags.MISSING_VALUES_AS_NULLS))
+                        value = getPatchAttr(jsonNode, Constants.VALUE);
+                    else
+                        value = getPatchAttrWithDefault(jsonNode, Constants.VALUE, factory.nullNode());
+                    processor.add(path, transferOwnership ? value : value.deepCopy());
+                    break;
+                }
+
+                case REPLACE: {
+                    JsonNodeWrapper value;
+                    if (!flags.contains(CompatibilityFlags.MISSING_VALUES_AS_NULLS))
+                        value = getPatchAttr(jsonNode, Constants.VALUE);
+                    else
+                        value = getPatchAttrWithDefault(jsonNode, Constants.VALUE, factory.nullNode());
+                    processor.replace(path, transferOwnership ? value : value.deepCopy());
+                    break;
+                }
+
+                case MOVE: {
+                    JsonPointer fromPath = JsonPointer.parse(getPatchStringAttr(jsonNode, Constants.FROM).textValue());
+                    processor.move(fromPath, path);
+                    break;
+                }
+
+                case COPY: {
+                    JsonPointer fromPath = JsonPointer.parse(getPatchStringAttr(jsonNode, Constants.FROM).textValue());
+                    processor.copy(fromPath, path);
+                    break;
+                }
+
+                case TEST: {
+                    JsonNodeWrapper value;
+                    if (!flags.contains(CompatibilityFlags.MISSING_VALUES_AS_NULLS))
+                        value = getPatchAttr(jsonNode, Constants.VALUE);
+                    else
+                        value = getPatchAttrWithDefault(jsonNode, Constants.VALUE, factory.nullNode());
+                    // only compared, never inserted
+                    processor.test(path, value);
+                    break;
                 }
             }
-            catch (JsonPointerEvaluationException e) {
-                throw new JsonPatchApplicationException(e.getMessage(), operation, e.getPath());
+        }
+        catch (JsonPointerEvaluationException e) {
+            throw new JsonPatchApplicationException(e.getMessage(), operation, e.getPath());
+        }
+    }
+
+    /**
+     * Validates {@code patch} and parses it into typed operations, with their values copied out of the patch document
+     * unless {@link CompatibilityFlags#TRANSFER_VALUE_OWNERSHIP} is set.
+     */
+    protected static <N> Patch<N> parse(JsonNodeWrapper patch, EnumSet<CompatibilityFlags> flags, JsonNodeFactoryWrapper factory)
+            throws InvalidJsonPatchException {
+        List<PatchOperation<N>> operations = new ArrayList<PatchOperation<N>>();
+        boolean transferOwnership = flags.contains(CompatibilityFlags.TRANSFER_VALUE_OWNERSHIP);
+        process(patch, new JsonPatchProcessor() {
+            @Override
+            public void remove(JsonPointer path) {
+                operations.add(new PatchOperation<N>(Operation.REMOVE, null, path, null, null));
+            }
+
+            @Override
+            public void replace(JsonPointer path, JsonNodeWrapper value) {
+                operations.add(new PatchOperation<N>(Operation.REPLACE, null, path, value, null));
+            }
+
+            @Override
+            public void add(JsonPointer path, JsonNodeWrapper value) {
+                operations.add(new PatchOperation<N>(Operation.ADD, null, path, value, null));
+            }
+
+            @Override
+            public void move(JsonPointer fromPath, JsonPointer toPath) {
+                operations.add(new PatchOperation<N>(Operation.MOVE, fromPath, toPath, null, null));
+            }
+
+            @Override
+            public void copy(JsonPointer fromPath, JsonPointer toPath) {
+                operations.add(new PatchOperation<N>(Operation.COPY, fromPath, toPath, null, null));
+            }
+
+            @Override
+            public void test(JsonPointer path, JsonNodeWrapper value) {
+                operations.add(new PatchOperation<N>(Operation.TEST, null, path, transferOwnership ? value : value.deepCopy(), null));
+            }
+        }, flags, factory);
+        return new Patch<N>(operations, factory);
+    }
+
+    /**
+     * Same as {@link #process(JsonNodeWrapper, JsonPatchProcessor, EnumSet, JsonNodeFactoryWrapper)} for a typed
+     * patch, whose operations need no validation or pointer parsing.
+     */
+    protected static void process(Patch<?> patch, JsonPatchProcessor processor, EnumSet<CompatibilityFlags> flags) {
+        boolean transferOwnership = flags.contains(CompatibilityFlags.TRANSFER_VALUE_OWNERSHIP);
+        try {
+            for (PatchOperation<?> patchOperation : patch) {
+                Operation operation = patchOperation.getOperation();
+                try {
+                    switch (operation) {
+                        case REMOVE:
+                            processor.remove(patchOperation.path());
+                            break;
+
+                        case ADD:
+                            processor.add(patchOperation.path(), transferOwnership ? patchOperation.value() : patchOperation.value().deepCopy());
+                            break;
+
+                        case REPLACE:
+                            processor.replace(patchOperation.path(), transferOwnership ? patchOperation.value() : patchOperation.value().deepCopy());
+                            break;
+
+                        case MOVE:
+                            processor.move(patchOperation.from(), patchOperation.path());
+                            break;
+
+                        case COPY:
+                            processor.copy(patchOperation.from(), patchOperation.path());
+                            break;
+
+                        case TEST:
+                            processor.test(patchOperation.path(), patchOperation.value());
+                            break;
+                    }
+                }
+                catch (JsonPointerEvaluationException e) {
+                    throw new JsonPatchApplicationException(e.getMessage(), operation, e.getPath());
+                }
             }
+        } finally {
+            processor.flush();
         }
     }
 }
@@ -137,6 +137,19 @@ public abstract sealed class AbstractJsonPointer permits JsonPointer, Jackson3Js
         return createInstance(newTokens);
     }
 
+    /**
+     * Creates a new JSON pointer to the element of the array referenced by this instance whose
+     * {@code key} field holds {@code value}.
+     *
+     * @param keyRef The key and value identifying the element.
+     * @return The new {@link AbstractJsonPointer} instance.
+     */
+    AbstractJsonPointer append(KeyRef keyRef) {
+        RefToken[] newTokens = Arrays.copyOf(tokens, tokens.length + 1);
+        newTokens[tokens.length] = new RefToken(keyRef.key + "=" + keyRef.value, null, keyRef);
+        return createInstance(newTokens);
+    }
+
     /** Returns the number of reference tokens comprising this instance. */
     int size() {
         return tokens.length;
@@ -151,11 +164,18 @@ public abstract sealed class AbstractJsonPointer permits JsonPointer, Jackson3Js
      */
     public String toString() {
         StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the string representation of this pointer to {@code sb}, without creating intermediate strings.
+     */
+    void appendTo(StringBuilder sb) {
         for (RefToken token : tokens) {
             sb.append('/');
-            sb.append(token);
+            token.appendTo(sb);
         }
-        return sb.toString();
     }
 
     /**
@@ -209,19 +229,11 @@ public abstract sealed class AbstractJsonPointer permits JsonPointer, Jackson3Js
                         error(idx, "Array index " + token + " is out of bounds", document);
                     current = current.get(token.getIndex());
                 } else if (token.isArrayKeyRef()) {
-                    KeyRef keyRef = token.getKeyRef();
-                    JsonNodeWrapper foundArrayNode = null;
-                    for (int arrayIdx = 0; arrayIdx < current.size(); ++arrayIdx) {
-                        JsonNodeWrapper arrayNode = current.get(arrayIdx);
-                        if (matches(keyRef, arrayNode)) {
-                            foundArrayNode = arrayNode;
-                            break;
-                        }
-                    }
-                    if (foundArrayNode == null) {
+                    int arrayIdx = indexOf(token.getKeyRef(), current);
+                    if (arrayIdx < 0) {
                         error(idx, "Array has no matching object for key reference " + token, document);
                     }
-                    current = foundArrayNode;
+                    current = current.get(arrayIdx);
                 } else {
                     error(idx, "Can't reference field \"" + token.getField() + "\" on array", document);
                 }
@@ -238,17 +250,35 @@ public abstract sealed class AbstractJsonPointer permits JsonPointer, Jackson3Js
         return current;
     }
 
-    private boolean matches(KeyRef keyRef, JsonNodeWrapper arrayNode) {
-        boolean matches = false;
-        if (arrayNode.has(keyRef.key)) {
-             JsonNodeWrapper valueNode = arrayNode.get(keyRef.key);
-             if (valueNode.isTextual()) {
-                 matches = Objects.equals(keyRef.value, valueNode.textValue());
-             } else if (valueNode.isNumber() || valueNode.isBoolean()) {
-                 matches = Objects.equals(keyRef.value, valueNode.toString());
-             }
+    /**
+     * Finds the first element of {@code array} matched by {@code keyRef}.
+     *
+     * @return the index of the element, or -1 if there is none
+     */
+    static int indexOf(KeyRef keyRef, JsonNodeWrapper array) {
+        for (int arrayIdx = 0; arrayIdx < array.size(); ++arrayIdx) {
+            if (Objects.equals(keyRef.value, keyValue(array.get(arrayIdx), keyRef.key))) {
+                return arrayIdx;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value a key reference on {@code key} has to hold to match {@code arrayNode}.
+     *
+     * @return the textual form of the key field, or {@code null} if it is missing or not a scalar
+     */
+    static String keyValue(JsonNodeWrapper arrayNode, String key) {
+        if (arrayNode.has(key)) {
+            JsonNodeWrapper valueNode = arrayNode.get(key);
+            if (valueNode.isTextual()) {
+                return valueNode.textValue();
+            } else if (valueNode.isNumber() || valueNode.isBoolean()) {
+                return valueNode.toString();
+            }
         }
-        return matches;
+        return null;
     }
 
     @Override
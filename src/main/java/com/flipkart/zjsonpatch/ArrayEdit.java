@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.ArrayNodeWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A run of index-addressed changes to one array, made to a gap buffer of its elements and written back in a single
+ * pass. Changes at or next to the previous one cost no more than moving the gap, so a run of removals or additions
+ * at adjacent indexes does not shift the rest of the array once per operation.
+ */
+class ArrayEdit {
+
+    private final ArrayNodeWrapper array;
+    private final RefToken[] path;
+    private JsonNodeWrapper[] elements;
+    private int gapStart;
+    private int gapEnd;
+
+    /**
+     * @param path the tokens of a pointer to an element of {@code array}
+     */
+    ArrayEdit(ArrayNodeWrapper array, RefToken[] path) {
+        this.array = array;
+        this.path = path;
+        int size = array.size();
+        elements = new JsonNodeWrapper[size + Math.max(16, size >> 3)];
+        int i = 0;
+        for (JsonNodeWrapper element : array) {
+            elements[i++] = element;
+        }
+        gapStart = size;
+        gapEnd = elements.length;
+    }
+
+    ArrayNodeWrapper array() {
+        return array;
+    }
+
+    /**
+     * @return whether {@code elementPath} points to an element of the array being edited
+     */
+    boolean isFor(RefToken[] elementPath) {
+        return elementPath.length == path.length && ParentCache.startsWith(elementPath, path, path.length - 1);
+    }
+
+    int size() {
+        return elements.length - (gapEnd - gapStart);
+    }
+
+    /**
+     * @return the elements as they are now
+     */
+    List<JsonNodeWrapper> contents() {
+        List<JsonNodeWrapper> contents = new ArrayList<JsonNodeWrapper>(size());
+        for (int i = 0; i < gapStart; i++) {
+            contents.add(elements[i]);
+        }
+        for (int i = gapEnd; i < elements.length; i++) {
+            contents.add(elements[i]);
+        }
+        return contents;
+    }
+
+    void insert(int index, JsonNodeWrapper value) {
+        if (gapStart == gapEnd)
+            grow();
+        moveGap(index);
+        elements[gapStart++] = value;
+    }
+
+    void add(JsonNodeWrapper value) {
+        insert(size(), value);
+    }
+
+    void remove(int index) {
+        moveGap(index);
+        elements[gapEnd++] = null;
+    }
+
+    void set(int index, JsonNodeWrapper value) {
+        elements[index < gapStart ? index : index + gapEnd - gapStart] = value;
+    }
+
+    /**
+     * Replaces the contents of the array with the edited elements.
+     */
+    void writeBack() {
+        array.removeAll();
+        for (int i = 0; i < gapStart; i++) {
+            array.add(elements[i]);
+        }
+        for (int i = gapEnd; i < elements.length; i++) {
+            array.add(elements[i]);
+        }
+    }
+
+    // the elements after the gap stay at the end of the buffer
+    private void moveGap(int index) {
+        if (index < gapStart) {
+            int count = gapStart - index;
+            System.arraycopy(elements, index, elements, gapEnd - count, count);
+            gapStart = index;
+            gapEnd -= count;
+        } else if (index > gapStart) {
+            int count = index - gapStart;
+            System.arraycopy(elements, gapEnd, elements, gapStart, count);
+            gapStart = index;
+            gapEnd += count;
+        }
+    }
+
+    private void grow() {
+        JsonNodeWrapper[] grown = new JsonNodeWrapper[elements.length * 2];
+        int tail = elements.length - gapEnd;
+        System.arraycopy(elements, 0, grown, 0, gapStart);
+        System.arraycopy(elements, gapEnd, grown, grown.length - tail, tail);
+        gapEnd = grown.length - tail;
+        elements = grown;
+    }
+}
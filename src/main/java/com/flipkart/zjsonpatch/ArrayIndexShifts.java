@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Net index shift that a range of ADD / REMOVE diffs applies to the arrays they touch.
+ * <p>
+ * Diffs are grouped by the pointer of the array they add to or remove from, in a trie over
+ * reference tokens. Each array keeps the positions of its diffs in the patch together with a
+ * Fenwick tree of their weights (+1 for a REMOVE, -1 for an ADD), so the shift over any range
+ * of the patch is two prefix sums per level of the queried pointer instead of a scan of the range.
+ */
+final class ArrayIndexShifts {
+
+    private final Parent root = new Parent();
+
+    ArrayIndexShifts(List<Diff> diffs) {
+        for (int i = 0; i < diffs.size(); i++) {
+            Diff diff = diffs.get(i);
+            if (diff != null && weight(diff) != 0)
+                arrayOf(diff.getPath()).addPosition(i);
+        }
+        root.build(diffs);
+    }
+
+    /**
+     * Stops counting the diff at {@code diffIdx}, once it has been rewritten into something
+     * that no longer shifts indexes.
+     */
+    void remove(int diffIdx, Diff diff) {
+        int weight = weight(diff);
+        if (weight != 0)
+            arrayOf(diff.getPath()).update(diffIdx, -weight);
+    }
+
+    /**
+     * Computes the shift applied to each token of {@code path} by the diffs at positions
+     * {@code startIdx} to {@code endIdx}, both inclusive.
+     *
+     * @return the per-token shifts, or {@code null} if no token is shifted
+     */
+    int[] shifts(AbstractJsonPointer path, int startIdx, int endIdx) {
+        int[] counters = null;
+        Parent node = root;
+        for (int level = 0; level < path.size() && node != null; level++) {
+            int shift = node.sum(startIdx, endIdx);
+            if (shift != 0) {
+                if (counters == null)
+                    counters = new int[path.size()];
+                counters[level] = shift;
+            }
+            node = node.children.get(path.get(level));
+        }
+        return counters;
+    }
+
+    private static int weight(Diff diff) {
+        if (diff.getPath().isRoot() || !diff.getPath().last().isArrayIndex())
+            return 0;
+        if (Operation.REMOVE == diff.getOperation())
+            return 1;
+        if (Operation.ADD == diff.getOperation())
+            return -1;
+        return 0;
+    }
+
+    private Parent arrayOf(AbstractJsonPointer path) {
+        Parent node = root;
+        for (int level = 0; level < path.size() - 1; level++) {
+            RefToken token = path.get(level);
+            Parent child = node.children.get(token);
+            if (child == null) {
+                child = new Parent();
+                node.children.put(token, child);
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private static final class Parent {
+        private final Map<RefToken, Parent> children = new HashMap<RefToken, Parent>(4);
+        private int[] positions = new int[0];
+        private int size;
+        private int[] tree;
+
+        private void addPosition(int diffIdx) {
+            if (size == positions.length)
+                positions = Arrays.copyOf(positions, Math.max(4, size * 2));
+            positions[size++] = diffIdx;
+        }
+
+        private void build(List<Diff> diffs) {
+            tree = new int[size + 1];
+            for (int i = 0; i < size; i++) {
+                int node = i + 1;
+                tree[node] += weight(diffs.get(positions[i]));
+                int parent = node + (node & -node);
+                if (parent <= size)
+                    tree[parent] += tree[node];
+            }
+            for (Parent child : children.values()) {
+                child.build(diffs);
+            }
+        }
+
+        private void update(int diffIdx, int delta) {
+            for (int node = Arrays.binarySearch(positions, 0, size, diffIdx) + 1; node <= size; node += node & -node) {
+                tree[node] += delta;
+            }
+        }
+
+        private int sum(int startIdx, int endIdx) {
+            if (size == 0 || startIdx > endIdx)
+                return 0;
+            return prefix(upperBound(endIdx)) - prefix(upperBound(startIdx - 1));
+        }
+
+        // number of positions <= diffIdx
+        private int upperBound(int diffIdx) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (positions[mid] <= diffIdx)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            return low;
+        }
+
+        private int prefix(int count) {
+            int sum = 0;
+            for (int node = count; node > 0; node -= node & -node) {
+                sum += tree[node];
+            }
+            return sum;
+        }
+    }
+}
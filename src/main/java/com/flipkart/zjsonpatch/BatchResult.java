@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.flipkart.zjsonpatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The outcome of applying one patch to a batch of documents with {@link CompiledPatch#applyAll}. A document the
+ * patch fails on is reported here and does not stop the rest of the batch.
+ *
+ * @param <N> the {@code JsonNode} type of the Jackson line the patch was compiled with
+ */
+public final class BatchResult<N> {
+
+    private final List<N> results;
+    private final Map<Integer, JsonPatchApplicationException> failures;
+
+    BatchResult(Object[] results, JsonPatchApplicationException[] failures) {
+        @SuppressWarnings("unchecked")
+        List<N> resultList = (List<N>) Arrays.asList(results);
+        this.results = Collections.unmodifiableList(resultList);
+        Map<Integer, JsonPatchApplicationException> failureMap = new TreeMap<Integer, JsonPatchApplicationException>();
+        for (int i = 0; i < failures.length; i++) {
+            if (failures[i] != null)
+                failureMap.put(i, failures[i]);
+        }
+        this.failures = Collections.unmodifiableMap(failureMap);
+    }
+
+    /**
+     * @return the patched documents in the order of the input, with {@code null} for the ones that failed
+     */
+    public List<N> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the failure of each document the patch could not be applied to, by its index in the input
+     */
+    public Map<Integer, JsonPatchApplicationException> getFailures() {
+        return failures;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    /**
+     * @return the patched documents of the batch, leaving out the ones that failed
+     */
+    public List<N> getSuccessfulResults() {
+        List<N> successful = new ArrayList<N>(results.size() - failures.size());
+        for (int i = 0; i < results.size(); i++) {
+            if (!failures.containsKey(i))
+                successful.add(results.get(i));
+        }
+        return successful;
+    }
+}
@@ -25,7 +25,14 @@ public enum CompatibilityFlags {
     MISSING_VALUES_AS_NULLS,
     REMOVE_NONE_EXISTING_ARRAY_ELEMENT,
     ALLOW_MISSING_TARGET_OBJECT_ON_REPLACE,
-    FORBID_REMOVE_MISSING_OBJECT;
+    FORBID_REMOVE_MISSING_OBJECT,
+    /**
+     * The caller hands the patch over: {@code add} and {@code replace} values are inserted into the document by
+     * reference instead of being deep-copied, so the patch must not be used or modified afterwards.
+     *
+     * @since 0.6.3
+     */
+    TRANSFER_VALUE_OWNERSHIP;
 
     public static EnumSet<CompatibilityFlags> defaults() {
         return EnumSet.noneOf(CompatibilityFlags.class);
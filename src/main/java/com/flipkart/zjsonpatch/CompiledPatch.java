@@ -0,0 +1,316 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.JacksonVersionBridge;
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * A patch validated and parsed once, for applying to many documents. Each operation is turned into a step
+ * calling the apply processor directly, so applying costs the pointer evaluations and mutations only. Scalar
+ * values are handed over as they are, since Jackson's value nodes are immutable; container values are copied
+ * per document, and {@code test} values are never copied.
+ *
+ * <p>Instances are immutable and may be shared between threads, each {@link #apply} working on its own document.
+ *
+ * @param <N> the {@code JsonNode} type of the Jackson line the patch was compiled with
+ * @see JsonPatch#compile(com.fasterxml.jackson.databind.JsonNode, EnumSet)
+ * @see Jackson3JsonPatch#compile(tools.jackson.databind.JsonNode, EnumSet)
+ */
+public final class CompiledPatch<N> {
+
+    // documents read from a stream before they are handed to a worker together
+    private static final int STREAM_CHUNK_SIZE = 256;
+
+    private final Patch<N> patch;
+    private final EnumSet<CompatibilityFlags> flags;
+    private final Step[] steps;
+
+    CompiledPatch(Patch<N> patch, EnumSet<CompatibilityFlags> flags) {
+        this.patch = patch;
+        this.flags = EnumSet.copyOf(flags);
+        List<PatchOperation<N>> operations = patch.getOperations();
+        this.steps = new Step[operations.size()];
+        for (int i = 0; i < steps.length; i++) {
+            steps[i] = compile(operations.get(i));
+        }
+    }
+
+    private static Step compile(PatchOperation<?> operation) {
+        JsonPointer path = operation.path();
+        JsonPointer from = operation.from();
+        JsonNodeWrapper value = operation.value();
+        switch (operation.getOperation()) {
+            case REMOVE:
+                return processor -> processor.remove(path);
+            case ADD:
+                return value.isContainerNode()
+                        ? processor -> processor.add(path, value.deepCopy())
+                        : processor -> processor.add(path, value);
+            case REPLACE:
+                return value.isContainerNode()
+                        ? processor -> processor.replace(path, value.deepCopy())
+                        : processor -> processor.replace(path, value);
+            case MOVE:
+                return processor -> processor.move(from, path);
+            case COPY:
+                return processor -> processor.copy(from, path);
+            case TEST:
+                return processor -> processor.test(path, value);
+            default:
+                // Safety net
+                throw new IllegalArgumentException("Unknown operation specified:" + operation.getOperation());
+        }
+    }
+
+    /**
+     * @return the operations this patch was compiled from
+     */
+    public Patch<N> getPatch() {
+        return patch;
+    }
+
+    EnumSet<CompatibilityFlags> flags() {
+        return flags;
+    }
+
+    /**
+     * Applies the patch to a copy of {@code document}, which is left unchanged.
+     *
+     * @throws JsonPatchApplicationException if an operation cannot be applied
+     */
+    public N apply(N document) throws JsonPatchApplicationException {
+        CopyingApplyProcessor processor = new CopyingApplyProcessor(JacksonVersionBridge.wrap(document), flags);
+        run(processor);
+        return JacksonVersionBridge.unwrap(processor.result());
+    }
+
+    /**
+     * Same as {@link #apply}, copying only the containers on the way to each change; the result shares every
+     * subtree the patch does not touch with {@code document}, which is left unchanged.
+     *
+     * @throws JsonPatchApplicationException if an operation cannot be applied
+     * @see JsonPatch#applyWithSharing(com.fasterxml.jackson.databind.JsonNode, com.fasterxml.jackson.databind.JsonNode, EnumSet)
+     */
+    public N applyWithSharing(N document) throws JsonPatchApplicationException {
+        SharingApplyProcessor processor = new SharingApplyProcessor(JacksonVersionBridge.wrap(document), flags, patch.factory());
+        run(processor);
+        return JacksonVersionBridge.unwrap(processor.result());
+    }
+
+    /**
+     * Applies the patch to {@code document} itself.
+     *
+     * @throws JsonPatchApplicationException if an operation cannot be applied; the operations before it stay applied
+     */
+    public void applyInPlace(N document) throws JsonPatchApplicationException {
+        run(new InPlaceApplyProcessor(JacksonVersionBridge.wrap(document), flags));
+    }
+
+    /**
+     * Applies the patch to a copy of each of {@code documents}, spread over the workers of {@code pool}. A
+     * {@link JsonPatchApplicationException} on one document is recorded in the result and the batch goes on.
+     */
+    public BatchResult<N> applyAll(List<? extends N> documents, ForkJoinPool pool) {
+        Batch batch = new Batch(documents);
+        pool.invoke(new BatchTask(batch, 0, documents.size(), chunkSize(documents.size(), pool.getParallelism())));
+        return batch.result();
+    }
+
+    /**
+     * Same as {@link #applyAll(List, ForkJoinPool)} for a stream, which is read in chunks of a few hundred documents
+     * as the workers of {@code pool} take them; only a few chunks per worker are held at a time, besides the
+     * results. A {@link Spliterator} can be passed through
+     * {@link java.util.stream.StreamSupport#stream}.
+     */
+    public BatchResult<N> applyAll(Stream<? extends N> documents, ForkJoinPool pool) {
+        return applyAll(documents, pool, pool.getParallelism());
+    }
+
+    /**
+     * Same as {@link #applyAll(List, ForkJoinPool)}, with the batch cut into chunks run on {@code executor}. Waits
+     * for every chunk to finish.
+     */
+    public BatchResult<N> applyAll(List<? extends N> documents, Executor executor) {
+        Batch batch = new Batch(documents);
+        int chunkSize = chunkSize(documents.size(), Runtime.getRuntime().availableProcessors());
+        List<CompletableFuture<Void>> chunks = new ArrayList<CompletableFuture<Void>>();
+        for (int from = 0; from < documents.size(); from += chunkSize) {
+            int start = from;
+            int end = Math.min(from + chunkSize, documents.size());
+            chunks.add(CompletableFuture.runAsync(() -> batch.apply(start, end), executor));
+        }
+        join(CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])));
+        return batch.result();
+    }
+
+    /**
+     * Same as {@link #applyAll(Stream, ForkJoinPool)}, with the chunks run on {@code executor}. Waits for every
+     * chunk to finish.
+     */
+    public BatchResult<N> applyAll(Stream<? extends N> documents, Executor executor) {
+        return applyAll(documents, executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    private BatchResult<N> applyAll(Stream<? extends N> documents, Executor executor, int workers) {
+        Spliterator<? extends N> spliterator = documents.spliterator();
+        Deque<CompletableFuture<Batch>> running = new ArrayDeque<CompletableFuture<Batch>>();
+        List<Object> results = new ArrayList<Object>();
+        List<JsonPatchApplicationException> failures = new ArrayList<JsonPatchApplicationException>();
+        List<N> chunk = new ArrayList<N>(STREAM_CHUNK_SIZE);
+        boolean more = true;
+        while (more) {
+            more = spliterator.tryAdvance(chunk::add);
+            if (chunk.size() == STREAM_CHUNK_SIZE || !more && !chunk.isEmpty()) {
+                Batch batch = new Batch(chunk);
+                running.add(CompletableFuture.supplyAsync(() -> {
+                    batch.apply(0, batch.documents.size());
+                    return batch;
+                }, executor));
+                chunk = new ArrayList<N>(STREAM_CHUNK_SIZE);
+            }
+            // wait for the oldest chunk once every worker has a couple queued, so the stream is not read ahead
+            while (running.size() > workers * 2 || !more && !running.isEmpty()) {
+                Batch done = join(running.remove());
+                results.addAll(Arrays.asList(done.results));
+                failures.addAll(Arrays.asList(done.failures));
+            }
+        }
+        return new BatchResult<N>(results.toArray(), failures.toArray(new JsonPatchApplicationException[0]));
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    // a few chunks per worker, so that workers finishing early can take over
+    private static int chunkSize(int documents, int workers) {
+        return Math.max(1, documents / (workers * 4));
+    }
+
+    /**
+     * Same as {@link #applyInPlace}, but all or nothing: if an operation fails, the changes already made to
+     * {@code document} are undone before the exception is thrown.
+     *
+     * @throws JsonPatchApplicationException if an operation cannot be applied
+     */
+    public void applyInPlaceAtomic(N document) throws JsonPatchApplicationException {
+        InPlaceApplyProcessor processor = new InPlaceApplyProcessor(JacksonVersionBridge.wrap(document), flags);
+        processor.recordUndo();
+        try {
+            run(processor);
+        } catch (RuntimeException e) {
+            processor.rollback();
+            throw e;
+        }
+    }
+
+    private void run(JsonPatchProcessor processor) {
+        try {
+            for (int i = 0; i < steps.length; i++) {
+                try {
+                    steps[i].applyTo(processor);
+                } catch (JsonPointerEvaluationException e) {
+                    throw new JsonPatchApplicationException(e.getMessage(), patch.getOperations().get(i).getOperation(), e.getPath());
+                }
+            }
+        } finally {
+            processor.flush();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return patch.toString();
+    }
+
+    private final class Batch {
+        private final List<? extends N> documents;
+        private final Object[] results;
+        private final JsonPatchApplicationException[] failures;
+
+        private Batch(List<? extends N> documents) {
+            // documents are read by index, possibly from many threads
+            this.documents = documents instanceof RandomAccess ? documents : new ArrayList<N>(documents);
+            this.results = new Object[documents.size()];
+            this.failures = new JsonPatchApplicationException[documents.size()];
+        }
+
+        private void apply(int from, int to) {
+            for (int i = from; i < to; i++) {
+                try {
+                    results[i] = CompiledPatch.this.apply(documents.get(i));
+                } catch (JsonPatchApplicationException e) {
+                    failures[i] = e;
+                }
+            }
+        }
+
+        private BatchResult<N> result() {
+            return new BatchResult<N>(results, failures);
+        }
+    }
+
+    private final class BatchTask extends RecursiveAction {
+        private final Batch batch;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        private BatchTask(Batch batch, int from, int to, int chunkSize) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                batch.apply(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(batch, from, middle, chunkSize), new BatchTask(batch, middle, to, chunkSize));
+        }
+    }
+
+    private interface Step {
+        void applyTo(JsonPatchProcessor processor) throws JsonPointerEvaluationException;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import java.time.Duration;
+
+/**
+ * Bounds the work of a single diff.
+ * <p>
+ * An array whose comparison would take more than {@link Builder#maxArrayComparisons(long)} element
+ * comparisons, or that is compared after the {@link Builder#timeout(Duration) timeout} has elapsed,
+ * is emitted as a single {@link Operation#REPLACE} (preceded by a {@link Operation#TEST} if
+ * {@link DiffFlags#EMIT_TEST_OPERATIONS} is set) instead of an element-wise diff. The rest of the
+ * document is still diffed, so the patch stays correct, only coarser.
+ * <p>
+ * {@link #cancel()} may be called from any thread and makes the running diff throw
+ * {@link DiffCancelledException} at its next check. A budget is meant for one diff call; its timeout
+ * starts counting when it is built.
+ *
+ * @since 0.6.3
+ */
+public final class DiffBudget {
+
+    private final long maxArrayComparisons;
+    private final long deadline;
+    private final boolean hasDeadline;
+    private volatile boolean cancelled;
+
+    private DiffBudget(Builder builder) {
+        this.maxArrayComparisons = builder.maxArrayComparisons;
+        this.hasDeadline = builder.timeout != null;
+        this.deadline = hasDeadline ? System.nanoTime() + builder.timeout.toNanos() : 0;
+    }
+
+    /**
+     * @return a new budget without limits, which can still be cancelled
+     */
+    public static DiffBudget unlimited() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public long getMaxArrayComparisons() {
+        return maxArrayComparisons;
+    }
+
+    /**
+     * Asks the diff using this budget to stop. The diff throws {@link DiffCancelledException}
+     * instead of returning a patch.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true once the timeout has elapsed
+     */
+    public boolean isExpired() {
+        return hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+
+    void checkCancelled() {
+        if (cancelled)
+            throw new DiffCancelledException("Diff was cancelled");
+    }
+
+    public static final class Builder {
+
+        private long maxArrayComparisons = Long.MAX_VALUE;
+        private Duration timeout;
+
+        private Builder() {
+        }
+
+        /**
+         * Maximum number of element comparisons spent on aligning a single array.
+         */
+        public Builder maxArrayComparisons(long comparisons) {
+            if (comparisons < 0)
+                throw new IllegalArgumentException("maxArrayComparisons must not be negative: " + comparisons);
+            this.maxArrayComparisons = comparisons;
+            return this;
+        }
+
+        /**
+         * Time after which arrays are no longer aligned element by element, counted from {@link #build()}.
+         */
+        public Builder timeout(Duration timeout) {
+            if (timeout.isNegative())
+                throw new IllegalArgumentException("timeout must not be negative: " + timeout);
+            this.timeout = timeout;
+            return this;
+        }
+
+        public DiffBudget build() {
+            return new DiffBudget(this);
+        }
+    }
+}
@@ -69,7 +69,17 @@ public enum DiffFlags {
      *
      * @since 0.4.8
      */
-    EMIT_TEST_OPERATIONS;
+    EMIT_TEST_OPERATIONS,
+
+    /**
+     * This flag makes {@link Operation#ADD} operations for array elements reference the
+     * element of the target document instead of a deep copy of it, as the values of all
+     * other operations already do. Use it when the target document is discarded, or at
+     * least no longer modified, once the patch is built.
+     *
+     * @since 0.6.3
+     */
+    TRANSFER_VALUE_OWNERSHIP;
 
 
     public static EnumSet<DiffFlags> defaults() {
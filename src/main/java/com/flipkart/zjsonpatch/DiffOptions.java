@@ -0,0 +1,286 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Settings for {@link JsonDiff} and {@link Jackson3JsonDiff} that do not fit in {@link DiffFlags}.
+ * Instances are immutable and can be shared between threads.
+ *
+ * @since 0.6.3
+ */
+public final class DiffOptions {
+
+    /**
+     * Default for {@link Builder#linearSpaceThreshold(long)}, about 64 MB of backtracking state per array.
+     */
+    public static final long DEFAULT_LINEAR_SPACE_THRESHOLD = 1L << 24;
+
+    /**
+     * Default for {@link Builder#parallelThreshold(int)}.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 10_000;
+
+    private final EnumSet<DiffFlags> flags;
+    private final long linearSpaceThreshold;
+    private final int copyCandidateMinNodes;
+    private final Map<String, String> arrayIdentityFields;
+    private final List<ArrayPathPattern> arrayIdentityPatterns;
+    private final List<ArrayPathPattern> unorderedArrayPatterns;
+    private final ForkJoinPool forkJoinPool;
+    private final int parallelThreshold;
+
+    private DiffOptions(Builder builder) {
+        this.flags = builder.flags.clone();
+        this.linearSpaceThreshold = builder.linearSpaceThreshold;
+        this.copyCandidateMinNodes = builder.copyCandidateMinNodes;
+        this.arrayIdentityFields = Collections.unmodifiableMap(new LinkedHashMap<String, String>(builder.arrayIdentityFields));
+        this.arrayIdentityPatterns = new ArrayList<ArrayPathPattern>(builder.arrayIdentityPatterns);
+        this.unorderedArrayPatterns = new ArrayList<ArrayPathPattern>(builder.unorderedArrayPatterns);
+        this.forkJoinPool = builder.forkJoinPool;
+        this.parallelThreshold = builder.parallelThreshold;
+    }
+
+    public static DiffOptions defaults() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public EnumSet<DiffFlags> getFlags() {
+        return flags.clone();
+    }
+
+    public long getLinearSpaceThreshold() {
+        return linearSpaceThreshold;
+    }
+
+    public int getCopyCandidateMinNodes() {
+        return copyCandidateMinNodes;
+    }
+
+    /**
+     * @return the declared identity fields, keyed by array path, in declaration order
+     */
+    public Map<String, String> getArrayIdentityFields() {
+        return arrayIdentityFields;
+    }
+
+    /**
+     * Returns the identity field declared for the array at {@code path}, or {@code null} if its
+     * elements are to be matched by position.
+     */
+    String identityField(AbstractJsonPointer path) {
+        for (ArrayPathPattern pattern : arrayIdentityPatterns) {
+            if (pattern.matches(path))
+                return pattern.field;
+        }
+        return null;
+    }
+
+    /**
+     * @return the declared unordered array paths, in declaration order
+     */
+    public List<String> getUnorderedArrays() {
+        List<String> paths = new ArrayList<String>(unorderedArrayPatterns.size());
+        for (ArrayPathPattern pattern : unorderedArrayPatterns) {
+            paths.add(pattern.path);
+        }
+        return paths;
+    }
+
+    /**
+     * Returns whether the array at {@code path} was declared to be compared as a multiset.
+     */
+    boolean isUnordered(AbstractJsonPointer path) {
+        for (ArrayPathPattern pattern : unorderedArrayPatterns) {
+            if (pattern.matches(path))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the pool subtrees are diffed in, or {@code null} to diff on the calling thread
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public static final class Builder {
+
+        private EnumSet<DiffFlags> flags = DiffFlags.defaults();
+        private long linearSpaceThreshold = DEFAULT_LINEAR_SPACE_THRESHOLD;
+        private int copyCandidateMinNodes = 1;
+        private final Map<String, String> arrayIdentityFields = new LinkedHashMap<String, String>();
+        private final List<ArrayPathPattern> arrayIdentityPatterns = new ArrayList<ArrayPathPattern>();
+        private final List<ArrayPathPattern> unorderedArrayPatterns = new ArrayList<ArrayPathPattern>();
+        private ForkJoinPool forkJoinPool;
+        private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+        private Builder() {
+        }
+
+        public Builder flags(EnumSet<DiffFlags> flags) {
+            this.flags = EnumSet.copyOf(flags);
+            return this;
+        }
+
+        /**
+         * Number of edit-graph cells an array comparison may keep for backtracking. Above it the
+         * comparison switches to a checkpointing mode that needs O(N+M) memory per recursion level
+         * at the cost of recomputing part of the edit graph. Both modes produce the same patch.
+         *
+         * @param cells maximum number of cells, 0 to always use the linear-space mode
+         */
+        public Builder linearSpaceThreshold(long cells) {
+            if (cells < 0)
+                throw new IllegalArgumentException("linearSpaceThreshold must not be negative: " + cells);
+            this.linearSpaceThreshold = cells;
+            return this;
+        }
+
+        /**
+         * Smallest value, counted in JSON nodes, that may be emitted as a {@link Operation#COPY} of an
+         * unchanged part of the document. Smaller values stay {@link Operation#ADD} operations and are
+         * never indexed, which saves most of the copy detection work on documents with many scalars.
+         *
+         * @param nodes minimum subtree size, where a scalar counts as 1 and a container as 1 plus its
+         *              descendants; defaults to 1, making every value a candidate
+         */
+        public Builder copyCandidateMinNodes(int nodes) {
+            if (nodes < 1)
+                throw new IllegalArgumentException("copyCandidateMinNodes must be at least 1: " + nodes);
+            this.copyCandidateMinNodes = nodes;
+            return this;
+        }
+
+        /**
+         * Matches the elements of the array at {@code arrayPath} by the value of their {@code field}
+         * instead of by position. Changes inside a matched element are addressed with key references
+         * such as {@code /items/id=123/price}, removed elements as {@code /items/id=123}, and reordering
+         * is expressed as {@link Operation#MOVE} operations from key references.
+         * <p>
+         * {@code arrayPath} is a JSON pointer in which a {@code *} token matches any single token, e.g.
+         * {@code /orders/*}{@code /lines}. Arrays nested in a keyed array are addressed through key
+         * references, so {@code /orders/id=7/lines} would match only the lines of order 7.
+         * If an element is not an object, lacks a non-empty scalar {@code field}, or two elements share
+         * the same key, the array is compared by position as usual.
+         *
+         * @param arrayPath pointer of the array in the source document
+         * @param field     name of the identity field
+         */
+        public Builder arrayIdentityField(String arrayPath, String field) {
+            if (field == null || field.isEmpty())
+                throw new IllegalArgumentException("Identity field must not be empty");
+            ArrayPathPattern pattern = new ArrayPathPattern(arrayPath, field);
+            arrayIdentityPatterns.removeIf(existing -> existing.path.equals(arrayPath));
+            arrayIdentityPatterns.add(pattern);
+            arrayIdentityFields.put(arrayPath, field);
+            return this;
+        }
+
+        /**
+         * Compares the array at {@code arrayPath} as a multiset: the order of its elements is ignored and
+         * only elements that occur more often in the source are removed, and elements that occur more
+         * often in the target are appended. Applying the patch therefore yields the target elements,
+         * but not necessarily in the target order.
+         * <p>
+         * {@code arrayPath} follows the same syntax as in {@link #arrayIdentityField(String, String)},
+         * which takes precedence if both match the same array.
+         *
+         * @param arrayPath pointer of the array in the source document
+         */
+        public Builder unorderedArray(String arrayPath) {
+            ArrayPathPattern pattern = new ArrayPathPattern(arrayPath, null);
+            unorderedArrayPatterns.removeIf(existing -> existing.path.equals(arrayPath));
+            unorderedArrayPatterns.add(pattern);
+            return this;
+        }
+
+        /**
+         * Diffs independent children of objects and arrays as separate tasks in {@code pool}. The diffs
+         * of each subtree are buffered and merged back in document order, so the patch is the same as
+         * the one computed on a single thread. The move and copy passes still run on the merged patch.
+         *
+         * @param pool pool to run the subtree tasks in, or {@code null} to diff on the calling thread
+         */
+        public Builder parallel(ForkJoinPool pool) {
+            this.forkJoinPool = pool;
+            return this;
+        }
+
+        /**
+         * Size of the smallest pair of subtrees worth diffing as a separate task when running in
+         * {@link #parallel(ForkJoinPool) parallel}, counted as the nodes of the source and target
+         * subtree together. Smaller subtrees are diffed by the task of their parent.
+         *
+         * @param nodes minimum combined subtree size; defaults to {@link DiffOptions#DEFAULT_PARALLEL_THRESHOLD}
+         */
+        public Builder parallelThreshold(int nodes) {
+            if (nodes < 1)
+                throw new IllegalArgumentException("parallelThreshold must be at least 1: " + nodes);
+            this.parallelThreshold = nodes;
+            return this;
+        }
+
+        public DiffOptions build() {
+            return new DiffOptions(this);
+        }
+    }
+
+    private static final class ArrayPathPattern {
+        private static final String WILDCARD = "*";
+
+        private final String path;
+        private final String[] tokens;
+        private final String field;
+
+        private ArrayPathPattern(String path, String field) {
+            List<RefToken> refTokens = AbstractJsonPointer.parseTokens(path);
+            this.path = path;
+            this.tokens = new String[refTokens.size()];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = refTokens.get(i).getField();
+            }
+            this.field = field;
+        }
+
+        private boolean matches(AbstractJsonPointer pointer) {
+            if (pointer.size() != tokens.length)
+                return false;
+            for (int i = 0; i < tokens.length; i++) {
+                if (!WILDCARD.equals(tokens[i]) && !tokens[i].equals(pointer.get(i).getField()))
+                    return false;
+            }
+            return true;
+        }
+    }
+}
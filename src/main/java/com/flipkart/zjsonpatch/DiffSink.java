@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.flipkart.zjsonpatch;
+
+/**
+ * Receives the operations of a diff one at a time, in patch order, in place of a patch document.
+ * <p>
+ * Pointers are passed in their string form. Members an operation does not carry are {@code null}.
+ *
+ * @param <N> JSON node type of the Jackson version in use
+ * @since 0.6.3
+ */
+@FunctionalInterface
+public interface DiffSink<N> {
+
+    /**
+     * @param operation the operation
+     * @param from      source pointer of a {@link Operation#MOVE} or {@link Operation#COPY}
+     * @param path      target pointer
+     * @param value     value of an add, replace or test, and of a remove unless
+     *                  {@link DiffFlags#OMIT_VALUE_ON_REMOVE} is set
+     * @param fromValue original value of a replace if {@link DiffFlags#ADD_ORIGINAL_VALUE_ON_REPLACE} is set
+     */
+    void accept(Operation operation, String from, String path, N value, N fromValue);
+}
@@ -21,11 +21,22 @@ import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
 import com.flipkart.zjsonpatch.mapping.ObjectNodeWrapper;
 
 import java.util.EnumSet;
+import java.util.List;
 
 class InPlaceApplyProcessor implements JsonPatchProcessor {
 
+    // arrays below this size are changed in place, as shifting their elements costs less than a rebuild
+    private static final int MIN_EDITED_ARRAY_SIZE = 64;
+
     private JsonNodeWrapper target;
     private EnumSet<CompatibilityFlags> flags;
+    private UndoLog undoLog;
+    private final ParentCache parents = new ParentCache();
+    // the run of index-addressed changes held back for one array, and its elements before the run for undo
+    private ArrayEdit arrayEdit;
+    private List<JsonNodeWrapper> arrayEditUndo;
+    // the pointer of the previous operation, if it changed an element of a large enough array in place
+    private RefToken[] previousIndexOp;
 
     // Internal wrapper-based constructors 
     InPlaceApplyProcessor(JsonNodeWrapper target) {
@@ -45,8 +56,92 @@ class InPlaceApplyProcessor implements JsonPatchProcessor {
         return false;
     }
 
+    /**
+     * Starts recording the inverse of each change, for {@link #rollback()}.
+     */
+    void recordUndo() {
+        undoLog = new UndoLog();
+    }
+
+    /**
+     * Puts the document back the way it was before the first change recorded since {@link #recordUndo()}.
+     */
+    void rollback() {
+        undoLog.rollback();
+    }
+
+    void setTarget(JsonNodeWrapper target) {
+        this.target = target;
+        parents.clear();
+    }
+
+    /**
+     * @return the container {@code path} is to be added to, replaced in or removed from
+     */
+    protected JsonNodeWrapper parentForUpdate(JsonPointer path) throws JsonPointerEvaluationException {
+        JsonNodeWrapper parentNode = parents.get(path.getTokens());
+        if (parentNode == null) {
+            parentNode = path.getParent().evaluate(target);
+            if (parentNode.isContainerNode())
+                parents.put(path.getTokens(), parentNode);
+        }
+        return parentNode;
+    }
+
+    @Override
+    public void flush() {
+        previousIndexOp = null;
+        if (arrayEdit == null)
+            return;
+        arrayEdit.writeBack();
+        if (undoLog != null)
+            undoLog.arrayReplaced(arrayEdit.array(), arrayEditUndo);
+        arrayEdit = null;
+        arrayEditUndo = null;
+    }
+
+    /**
+     * Flushes the held back changes unless {@code path} points to an element of the same array, and starts holding
+     * back changes when it points to an element of the array the previous operation changed.
+     *
+     * @return the edit to make the change to, or {@code null} if it is to be made in place
+     */
+    private ArrayEdit arrayEditFor(JsonPointer path) throws JsonPointerEvaluationException {
+        RefToken[] tokens = path.getTokens();
+        if (arrayEdit != null && arrayEdit.isFor(tokens)) {
+            parents.changed(tokens, false);
+            return arrayEdit;
+        }
+        RefToken[] previous = previousIndexOp;
+        flush();
+        if (previous == null || previous.length != tokens.length || !ParentCache.startsWith(tokens, previous, tokens.length - 1))
+            return null;
+
+        JsonNodeWrapper parentNode = parentForUpdate(path);
+        if (!parentNode.isArray())
+            return null;
+        arrayEdit = new ArrayEdit(parentNode.arrayValue(), tokens);
+        if (undoLog != null)
+            arrayEditUndo = arrayEdit.contents();
+        parents.changed(tokens, false);
+        return arrayEdit;
+    }
+
+    private void changedInPlace(JsonPointer path, JsonNodeWrapper array) {
+        if (array.size() >= MIN_EDITED_ARRAY_SIZE)
+            previousIndexOp = path.getTokens();
+    }
+
+    /**
+     * @return the value a {@code copy} puts at its destination
+     */
+    protected JsonNodeWrapper copyOf(JsonNodeWrapper value) {
+        return value.deepCopy();
+    }
+
     @Override
     public void move(JsonPointer fromPath, JsonPointer toPath) throws JsonPointerEvaluationException {
+        flush();
         JsonNodeWrapper valueNode = fromPath.evaluate(target);
         remove(fromPath);
         set(toPath, valueNode, Operation.MOVE);
@@ -54,8 +149,9 @@ class InPlaceApplyProcessor implements JsonPatchProcessor {
 
     @Override
     public void copy(JsonPointer fromPath, JsonPointer toPath) throws JsonPointerEvaluationException {
+        flush();
         JsonNodeWrapper valueNode = fromPath.evaluate(target);
-        JsonNodeWrapper valueToCopy = valueNode != null ? valueNode.deepCopy() : null;
+        JsonNodeWrapper valueToCopy = valueNode != null ? copyOf(valueNode) : null;
         set(toPath, valueToCopy, Operation.COPY);
     }
 
@@ -72,6 +168,7 @@ class InPlaceApplyProcessor implements JsonPatchProcessor {
 
     @Override
     public void test(JsonPointer path, JsonNodeWrapper value) throws JsonPointerEvaluationException {
+        flush();
         JsonNodeWrapper valueNode = path.evaluate(target);
         if (!valueNode.equals(value))
             throw new JsonPatchTestFailedException(
@@ -86,25 +183,55 @@ class InPlaceApplyProcessor implements JsonPatchProcessor {
     @Override
     public void replace(JsonPointer path, JsonNodeWrapper value) throws JsonPointerEvaluationException {
         if (path.isRoot()) {
+            flush();
             if (!allowRootReplacement())
                 throw new JsonPatchApplicationException("Cannot replace root document", Operation.REPLACE, path);
             target = value;
+            parents.clear();
             return;
         }
 
-        JsonNodeWrapper parentNode = path.getParent().evaluate(target);
         RefToken token = path.last();
+        if (isElementIndex(token)) {
+            ArrayEdit edit = arrayEditFor(path);
+            if (edit != null) {
+                if (token.getIndex() >= edit.size()) {
+                    flush();
+                    throw new JsonPatchApplicationException(
+                            "Array index " + token.getIndex() + " out of bounds", Operation.REPLACE, path.getParent());
+                }
+                edit.set(token.getIndex(), value);
+                return;
+            }
+        } else {
+            flush();
+        }
+
+        JsonNodeWrapper parentNode = parentForUpdate(path);
+        parents.changed(path.getTokens(), parentNode.isObject());
         if (parentNode.isObject()) {
             if (!flags.contains(CompatibilityFlags.ALLOW_MISSING_TARGET_OBJECT_ON_REPLACE) &&
                     !parentNode.has(token.getField()))
                 throw new JsonPatchApplicationException(
                         "Missing field \"" + token.getField() + "\"", Operation.REPLACE, path.getParent());
-            parentNode.objectValue().replace(token.getField(), value);
+            ObjectNodeWrapper parentObject = parentNode.objectValue();
+            JsonNodeWrapper previous = parentObject.replace(token.getField(), value);
+            if (undoLog != null)
+                undoLog.objectSet(parentObject, token.getField(), previous);
         } else if (parentNode.isArray()) {
-            if (token.getIndex() >= parentNode.size())
+            if (token.isArrayKeyRef()) {
+                int idx = AbstractJsonPointer.indexOf(token.getKeyRef(), parentNode);
+                if (idx < 0)
+                    throw new JsonPatchApplicationException(
+                            "Array has no matching object for key reference " + token, Operation.REPLACE, path.getParent());
+                setInArray(parentNode, idx, value);
+                return;
+            }
+            if (token.getIndex() < 0 || token.getIndex() >= parentNode.size())
                 throw new JsonPatchApplicationException(
-                        "Array index " + token.getIndex() + " out of bounds", Operation.REPLACE, path.getParent());
-            parentNode.arrayValue().set(token.getIndex(), value);
+                        "Array index " + token + " out of bounds", Operation.REPLACE, path.getParent());
+            setInArray(parentNode, token.getIndex(), value);
+            changedInPlace(path, parentNode);
         } else {
             throw new JsonPatchApplicationException(
                     "Can't reference past scalar value", Operation.REPLACE, path.getParent());
@@ -113,23 +240,57 @@ class InPlaceApplyProcessor implements JsonPatchProcessor {
 
     @Override
     public void remove(JsonPointer path) throws JsonPointerEvaluationException {
-        if (path.isRoot())
+        if (path.isRoot()) {
+            flush();
             throw new JsonPatchApplicationException("Cannot remove document root", Operation.REMOVE, path);
+        }
 
-        JsonNodeWrapper parentNode = path.getParent().evaluate(target);
         RefToken token = path.last();
+        if (isElementIndex(token)) {
+            ArrayEdit edit = arrayEditFor(path);
+            if (edit != null) {
+                if (token.getIndex() < edit.size()) {
+                    edit.remove(token.getIndex());
+                } else if (!flags.contains(CompatibilityFlags.REMOVE_NONE_EXISTING_ARRAY_ELEMENT)) {
+                    flush();
+                    throw new JsonPatchApplicationException(
+                            "Array index " + token.getIndex() + " out of bounds", Operation.REMOVE, path.getParent());
+                }
+                return;
+            }
+        } else {
+            flush();
+        }
+
+        JsonNodeWrapper parentNode = parentForUpdate(path);
+        parents.changed(path.getTokens(), parentNode.isObject());
         if (parentNode.isObject()) {
             if (flags.contains(CompatibilityFlags.FORBID_REMOVE_MISSING_OBJECT) && !parentNode.has(token.getField()))
                 throw new JsonPatchApplicationException(
                         "Missing field " + token.getField(), Operation.REMOVE, path.getParent());
-            parentNode.objectValue().remove(token.getField());
+            ObjectNodeWrapper parentObject = parentNode.objectValue();
+            if (undoLog != null && parentNode.has(token.getField()))
+                undoLog.objectRemoving(parentObject, token.getField(), parentNode.get(token.getField()));
+            parentObject.remove(token.getField());
         }
         else if (parentNode.isArray()) {
+            if (token.isArrayKeyRef()) {
+                int idx = AbstractJsonPointer.indexOf(token.getKeyRef(), parentNode);
+                if (idx >= 0)
+                    removeFromArray(parentNode, idx);
+                else if (!flags.contains(CompatibilityFlags.REMOVE_NONE_EXISTING_ARRAY_ELEMENT))
+                    throw new JsonPatchApplicationException(
+                            "Array has no matching object for key reference " + token, Operation.REMOVE, path.getParent());
+                return;
+            }
             if (!flags.contains(CompatibilityFlags.REMOVE_NONE_EXISTING_ARRAY_ELEMENT) &&
                     token.getIndex() >= parentNode.size())
                 throw new JsonPatchApplicationException(
                         "Array index " + token.getIndex() + " out of bounds", Operation.REMOVE, path.getParent());
-            parentNode.arrayValue().remove(token.getIndex());
+            if (token.getIndex() >= 0 && token.getIndex() < parentNode.size()) {
+                removeFromArray(parentNode, token.getIndex());
+                changedInPlace(path, parentNode);
+            }
         } else {
             throw new JsonPatchApplicationException(
                     "Cannot reference past scalar value", Operation.REMOVE, path.getParent());
@@ -140,13 +301,35 @@ class InPlaceApplyProcessor implements JsonPatchProcessor {
 
     private void set(JsonPointer path, JsonNodeWrapper value, Operation forOp) throws JsonPointerEvaluationException {
         if (path.isRoot()) {
+            flush();
             if (!allowRootReplacement())
                 throw new JsonPatchApplicationException("Cannot replace root document", forOp, path);
             target = value;
+            parents.clear();
             return;
         }
 
-        JsonNodeWrapper parentNode = path.getParent().evaluate(target);
+        RefToken token = path.last();
+        if (isElementIndex(token) || (token.isArrayIndex() && token.getIndex() == JsonPointer.LAST_INDEX)) {
+            ArrayEdit edit = arrayEditFor(path);
+            if (edit != null) {
+                if (token.getIndex() == JsonPointer.LAST_INDEX) {
+                    edit.add(value);
+                } else if (token.getIndex() <= edit.size()) {
+                    edit.insert(token.getIndex(), value);
+                } else {
+                    flush();
+                    throw new JsonPatchApplicationException(
+                            "Array index " + token.getIndex() + " out of bounds", Operation.ADD, path.getParent());
+                }
+                return;
+            }
+        } else {
+            flush();
+        }
+
+        JsonNodeWrapper parentNode = parentForUpdate(path);
+        parents.changed(path.getTokens(), parentNode.isObject());
         if (!parentNode.isContainerNode())
             throw new JsonPatchApplicationException("Cannot reference past scalar value", forOp, path.getParent());
         else if (parentNode.isArray())
@@ -158,21 +341,48 @@ class InPlaceApplyProcessor implements JsonPatchProcessor {
     private void addToObject(JsonPointer path, JsonNodeWrapper node, JsonNodeWrapper value) {
         final ObjectNodeWrapper target = node.objectValue();
         String key = path.last().getField();
+        if (undoLog != null)
+            undoLog.objectSet(target, key, node.get(key));
         target.set(key, value);
     }
 
+    private void setInArray(JsonNodeWrapper parentNode, int index, JsonNodeWrapper value) {
+        ArrayNodeWrapper array = parentNode.arrayValue();
+        JsonNodeWrapper previous = parentNode.get(index);
+        array.set(index, value);
+        if (undoLog != null)
+            undoLog.arraySet(array, index, previous);
+    }
+
+    private void removeFromArray(JsonNodeWrapper parentNode, int index) {
+        ArrayNodeWrapper array = parentNode.arrayValue();
+        JsonNodeWrapper removed = array.remove(index);
+        if (undoLog != null)
+            undoLog.arrayRemoved(array, index, removed);
+    }
+
     private void addToArray(JsonPointer path, JsonNodeWrapper value, JsonNodeWrapper parentNode) {
         final ArrayNodeWrapper target = parentNode.arrayValue();
         int idx = path.last().getIndex();
 
         if (idx == JsonPointer.LAST_INDEX) {
             // see http://tools.ietf.org/html/rfc6902#section-4.1
+            if (undoLog != null)
+                undoLog.arrayInserted(target, target.size());
             target.add(value);
+            changedInPlace(path, parentNode);
         } else {
             if (idx > target.size())
                 throw new JsonPatchApplicationException(
                         "Array index " + idx + " out of bounds", Operation.ADD, path.getParent());
+            if (undoLog != null)
+                undoLog.arrayInserted(target, idx);
             target.insert(idx, value);
+            changedInPlace(path, parentNode);
         }
     }
+
+    private static boolean isElementIndex(RefToken token) {
+        return token.isArrayIndex() && token.getIndex() >= 0;
+    }
 }
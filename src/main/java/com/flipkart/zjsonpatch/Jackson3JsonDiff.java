@@ -19,11 +19,21 @@ package com.flipkart.zjsonpatch;
 import com.flipkart.zjsonpatch.mapping.JacksonVersionBridge;
 import com.flipkart.zjsonpatch.mapping.JsonNodeFactoryWrapper;
 import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+import com.flipkart.zjsonpatch.mapping.jackson3.Jackson3GeneratorWrapper;
 import com.flipkart.zjsonpatch.mapping.jackson3.Jackson3NodeFactory;
+import com.flipkart.zjsonpatch.mapping.jackson3.Jackson3ParserWrapper;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.StreamWriteFeature;
 import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.JsonNodeFactory;
 
+import java.io.OutputStream;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Jackson 3.x compatible JSON Diff implementation.
@@ -35,9 +45,10 @@ import java.util.List;
 public final class Jackson3JsonDiff extends AbstractJsonDiff {
 
     private static final JsonNodeFactoryWrapper FACTORY = new Jackson3NodeFactory();
+    private static final JsonMapper WRITER_MAPPER = JsonMapper.builder().disable(StreamWriteFeature.AUTO_CLOSE_TARGET).build();
 
-    private Jackson3JsonDiff(EnumSet<DiffFlags> flags) {
-        super(flags);
+    private Jackson3JsonDiff(DiffOptions options, DiffBudget budget) {
+        super(options, budget);
     }
 
     @Override
@@ -55,8 +66,129 @@ public final class Jackson3JsonDiff extends AbstractJsonDiff {
     }
 
     public static JsonNode asJson(final JsonNode source, final JsonNode target, EnumSet<DiffFlags> flags) {
+        return asJson(source, target, DiffOptions.builder().flags(flags).build());
+    }
+
+    public static JsonNode asJson(final JsonNode source, final JsonNode target, DiffOptions options) {
+        return asJson(source, target, options, DiffBudget.unlimited());
+    }
+
+    /**
+     * Same as {@link #asJson(JsonNode, JsonNode, DiffOptions)}, with the work bounded by {@code budget}.
+     *
+     * @throws DiffCancelledException if the budget is cancelled before the diff completes
+     */
+    public static JsonNode asJson(final JsonNode source, final JsonNode target, DiffOptions options, DiffBudget budget) {
+        JsonNodeWrapper sourceWrapper = JacksonVersionBridge.wrap(source);
+        JsonNodeWrapper targetWrapper = JacksonVersionBridge.wrap(target);
+        return JacksonVersionBridge.unwrap(getJsonNode(sourceWrapper, targetWrapper, new Jackson3JsonDiff(options, budget), FACTORY));
+    }
+
+    public static Patch<JsonNode> asPatch(final JsonNode source, final JsonNode target) {
+        return asPatch(source, target, DiffOptions.defaults());
+    }
+
+    public static Patch<JsonNode> asPatch(final JsonNode source, final JsonNode target, DiffOptions options) {
+        return asPatch(source, target, options, DiffBudget.unlimited());
+    }
+
+    /**
+     * Same as {@link #asJson(JsonNode, JsonNode, DiffOptions, DiffBudget)}, returning the typed operations, which
+     * {@link Jackson3JsonPatch#apply(Patch, JsonNode)} takes without a patch document in between.
+     *
+     * @throws DiffCancelledException if the budget is cancelled before the diff completes
+     */
+    public static Patch<JsonNode> asPatch(final JsonNode source, final JsonNode target, DiffOptions options, DiffBudget budget) {
+        JsonNodeWrapper sourceWrapper = JacksonVersionBridge.wrap(source);
+        JsonNodeWrapper targetWrapper = JacksonVersionBridge.wrap(target);
+        return getPatch(sourceWrapper, targetWrapper, new Jackson3JsonDiff(options, budget), FACTORY);
+    }
+
+    /**
+     * Same as {@link #asJson(JsonNode, JsonNode, DiffOptions)}, handing the operations to {@code sink}
+     * instead of building a patch document.
+     */
+    public static void diff(final JsonNode source, final JsonNode target, DiffOptions options, DiffSink<JsonNode> sink) {
+        diff(source, target, options, DiffBudget.unlimited(), sink);
+    }
+
+    /**
+     * Same as {@link #asJson(JsonNode, JsonNode, DiffOptions, DiffBudget)}, handing the operations to
+     * {@code sink} instead of building a patch document.
+     *
+     * @throws DiffCancelledException if the budget is cancelled before the diff completes
+     */
+    public static void diff(final JsonNode source, final JsonNode target, DiffOptions options, DiffBudget budget, DiffSink<JsonNode> sink) {
         JsonNodeWrapper sourceWrapper = JacksonVersionBridge.wrap(source);
         JsonNodeWrapper targetWrapper = JacksonVersionBridge.wrap(target);
-        return JacksonVersionBridge.unwrap(getJsonNode(sourceWrapper, targetWrapper, new Jackson3JsonDiff(flags), FACTORY));
+        sendDiffs(sourceWrapper, targetWrapper, new Jackson3JsonDiff(options, budget), unwrapping(sink));
+    }
+
+    public static void writeTo(final JsonNode source, final JsonNode target, EnumSet<DiffFlags> flags, JsonGenerator generator) {
+        writeTo(source, target, DiffOptions.builder().flags(flags).build(), generator);
+    }
+
+    /**
+     * Writes the patch turning {@code source} into {@code target} to {@code generator} as a JSON array,
+     * token by token, without building the patch document first. The output is the same as
+     * {@link #asJson(JsonNode, JsonNode, DiffOptions)} would give. The generator is flushed, not closed.
+     */
+    public static void writeTo(final JsonNode source, final JsonNode target, DiffOptions options, JsonGenerator generator) {
+        JsonNodeWrapper sourceWrapper = JacksonVersionBridge.wrap(source);
+        JsonNodeWrapper targetWrapper = JacksonVersionBridge.wrap(target);
+        writeDiffs(sourceWrapper, targetWrapper, new Jackson3JsonDiff(options, DiffBudget.unlimited()), new Jackson3GeneratorWrapper(generator));
+    }
+
+    /**
+     * Same as {@link #writeTo(JsonNode, JsonNode, DiffOptions, JsonGenerator)}, writing UTF-8 to {@code out},
+     * which is left open.
+     */
+    public static void writeTo(final JsonNode source, final JsonNode target, DiffOptions options, OutputStream out) {
+        try (JsonGenerator generator = WRITER_MAPPER.createGenerator(out)) {
+            writeTo(source, target, options, generator);
+        }
+    }
+
+    public static JsonNode asJsonStreaming(final JsonParser source, final JsonParser target) {
+        return asJsonStreaming(source, target, DiffOptions.defaults());
+    }
+
+    /**
+     * Diffs two documents read from token streams without materializing them. Both parsers are consumed
+     * in lockstep and only the values that differ are read into trees, so memory is bounded by the largest
+     * differing value rather than by the document. Arrays are compared by position unless they are declared
+     * keyed or unordered in {@code options}, and no move or copy operations are produced.
+     * <p>
+     * The parsers may be positioned before the first token or on it; they are left on the last token
+     * of the document and are not closed.
+     */
+    public static JsonNode asJsonStreaming(final JsonParser source, final JsonParser target, DiffOptions options) {
+        ArrayNode patch = JsonNodeFactory.instance.arrayNode();
+        asJsonStreaming(source, target, options, patch::add);
+        return patch;
+    }
+
+    /**
+     * Same as {@link #asJsonStreaming(JsonParser, JsonParser, DiffOptions)}, handing each operation to
+     * {@code operations} as soon as it is known instead of collecting a patch.
+     */
+    public static void asJsonStreaming(final JsonParser source, final JsonParser target, DiffOptions options, Consumer<JsonNode> operations) {
+        streamDiffs(new Jackson3ParserWrapper(source), new Jackson3ParserWrapper(target),
+                () -> new Jackson3JsonDiff(options, DiffBudget.unlimited()), options, DiffBudget.unlimited(),
+                patchBuilder(FACTORY, operation -> operations.accept(JacksonVersionBridge.unwrap(operation))));
+    }
+
+    /**
+     * Same as {@link #asJsonStreaming(JsonParser, JsonParser, DiffOptions)}, handing the operations to
+     * {@code sink} as soon as they are known, without building patch objects.
+     */
+    public static void diffStreaming(final JsonParser source, final JsonParser target, DiffOptions options, DiffSink<JsonNode> sink) {
+        streamDiffs(new Jackson3ParserWrapper(source), new Jackson3ParserWrapper(target),
+                () -> new Jackson3JsonDiff(options, DiffBudget.unlimited()), options, DiffBudget.unlimited(), unwrapping(sink));
+    }
+
+    private static DiffSink<JsonNodeWrapper> unwrapping(DiffSink<JsonNode> sink) {
+        return (operation, from, path, value, fromValue) -> sink.accept(operation, from, path,
+                JacksonVersionBridge.unwrap(value), JacksonVersionBridge.unwrap(fromValue));
     }
 }
@@ -18,7 +18,11 @@ package com.flipkart.zjsonpatch;
 
 import com.flipkart.zjsonpatch.mapping.JacksonVersionBridge;
 import com.flipkart.zjsonpatch.mapping.JsonNodeFactoryWrapper;
+import com.flipkart.zjsonpatch.mapping.jackson3.Jackson3GeneratorWrapper;
 import com.flipkart.zjsonpatch.mapping.jackson3.Jackson3NodeFactory;
+import com.flipkart.zjsonpatch.mapping.jackson3.Jackson3ParserWrapper;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.JsonParser;
 import tools.jackson.databind.JsonNode;
 
 import java.util.EnumSet;
@@ -45,6 +49,56 @@ public final class Jackson3JsonPatch extends AbstractJsonPatch {
         validate(patch, CompatibilityFlags.defaults());
     }
 
+    /**
+     * Validates and parses {@code patch} once, for applying it to any number of documents with
+     * {@link CompiledPatch#apply}. Later changes to {@code patch} do not affect the compiled patch, unless
+     * {@link CompatibilityFlags#TRANSFER_VALUE_OWNERSHIP} hands its values over without copying them.
+     *
+     * @throws InvalidJsonPatchException if {@code patch} is not a valid patch document
+     */
+    public static CompiledPatch<JsonNode> compile(JsonNode patch, EnumSet<CompatibilityFlags> flags) throws InvalidJsonPatchException {
+        return new CompiledPatch<JsonNode>(parse(JacksonVersionBridge.wrap(patch), flags, FACTORY), flags);
+    }
+
+    public static CompiledPatch<JsonNode> compile(JsonNode patch) throws InvalidJsonPatchException {
+        return compile(patch, CompatibilityFlags.defaults());
+    }
+
+    /**
+     * Same as {@link #compile(JsonNode, EnumSet)} for a typed patch, sharing its values.
+     */
+    public static CompiledPatch<JsonNode> compile(Patch<JsonNode> patch, EnumSet<CompatibilityFlags> flags) {
+        return new CompiledPatch<JsonNode>(patch, flags);
+    }
+
+    /**
+     * Rewrites {@code patch} into a shorter patch with the same result on every document it applies to, for
+     * applying with the same {@code flags}: chains of {@code replace} on one value become one, changes within a
+     * value that is later replaced or removed are dropped, and changes within a value the patch adds or replaces are
+     * made to that value. Operations that may depend on the document are kept as they are.
+     *
+     * @throws InvalidJsonPatchException if {@code patch} is not a valid patch document
+     */
+    public static JsonNode optimize(JsonNode patch, EnumSet<CompatibilityFlags> flags) throws InvalidJsonPatchException {
+        Patch<JsonNode> optimized = PatchOptimizer.optimize(parse(JacksonVersionBridge.wrap(patch), flags, FACTORY), flags);
+        return optimized.toJson();
+    }
+
+    public static JsonNode optimize(JsonNode patch) throws InvalidJsonPatchException {
+        return optimize(patch, CompatibilityFlags.defaults());
+    }
+
+    /**
+     * Same as {@link #optimize(JsonNode, EnumSet)} for a typed patch, sharing the values it keeps.
+     */
+    public static Patch<JsonNode> optimize(Patch<JsonNode> patch, EnumSet<CompatibilityFlags> flags) {
+        return PatchOptimizer.optimize(patch, flags);
+    }
+
+    public static Patch<JsonNode> optimize(Patch<JsonNode> patch) {
+        return optimize(patch, CompatibilityFlags.defaults());
+    }
+
     public static JsonNode apply(JsonNode patch, JsonNode source, EnumSet<CompatibilityFlags> flags) throws JsonPatchApplicationException {
         CopyingApplyProcessor processor = new CopyingApplyProcessor(JacksonVersionBridge.wrap(source), flags);
         process(JacksonVersionBridge.wrap(patch), processor, flags, FACTORY);
@@ -55,6 +109,81 @@ public final class Jackson3JsonPatch extends AbstractJsonPatch {
         return apply(patch, source, CompatibilityFlags.defaults());
     }
 
+    /**
+     * Same as {@link #apply(JsonNode, JsonNode, EnumSet)} for a typed patch, whose operations are applied without
+     * being validated or parsed again.
+     */
+    public static JsonNode apply(Patch<JsonNode> patch, JsonNode source, EnumSet<CompatibilityFlags> flags) throws JsonPatchApplicationException {
+        CopyingApplyProcessor processor = new CopyingApplyProcessor(JacksonVersionBridge.wrap(source), flags);
+        process(patch, processor, flags);
+        return JacksonVersionBridge.unwrap(processor.result());
+    }
+
+    public static JsonNode apply(Patch<JsonNode> patch, JsonNode source) throws JsonPatchApplicationException {
+        return apply(patch, source, CompatibilityFlags.defaults());
+    }
+
+    /**
+     * Same as {@link #apply(JsonNode, JsonNode, EnumSet)} for a patch read from {@code patch} one operation at a
+     * time, so that only the largest operation, not the whole patch, is held in memory. The parser may be
+     * positioned before the first token or on it; it is left on the end of the patch array and is not closed.
+     */
+    public static JsonNode apply(JsonParser patch, JsonNode source, EnumSet<CompatibilityFlags> flags) throws JsonPatchApplicationException {
+        CopyingApplyProcessor processor = new CopyingApplyProcessor(JacksonVersionBridge.wrap(source), flags);
+        process(new Jackson3ParserWrapper(patch), processor, flags, FACTORY);
+        return JacksonVersionBridge.unwrap(processor.result());
+    }
+
+    public static JsonNode apply(JsonParser patch, JsonNode source) throws JsonPatchApplicationException {
+        return apply(patch, source, CompatibilityFlags.defaults());
+    }
+
+    /**
+     * Same as {@link #apply(JsonParser, JsonNode, EnumSet)}, applying each operation to {@code source} itself as it
+     * is read; if one fails, the operations before it stay applied.
+     */
+    public static void applyInPlace(JsonParser patch, JsonNode source, EnumSet<CompatibilityFlags> flags) {
+        process(new Jackson3ParserWrapper(patch), new InPlaceApplyProcessor(JacksonVersionBridge.wrap(source), flags), flags, FACTORY);
+    }
+
+    public static void applyInPlace(JsonParser patch, JsonNode source) {
+        applyInPlace(patch, source, CompatibilityFlags.defaults());
+    }
+
+    /**
+     * Applies {@code patch} to the document read from {@code source}, writing the result to {@code target} as it
+     * goes, for documents too large to hold as a tree.
+     *
+     * @see JsonPatch#applyStreaming(CompiledPatch, com.fasterxml.jackson.core.JsonParser, com.fasterxml.jackson.core.JsonGenerator)
+     */
+    public static void applyStreaming(CompiledPatch<JsonNode> patch, JsonParser source, JsonGenerator target) {
+        new StreamingApply(patch.getPatch(), patch.flags()).apply(new Jackson3ParserWrapper(source), new Jackson3GeneratorWrapper(target));
+    }
+
+    public static void applyInPlace(Patch<JsonNode> patch, JsonNode source) {
+        applyInPlace(patch, source, CompatibilityFlags.defaults());
+    }
+
+    public static void applyInPlace(Patch<JsonNode> patch, JsonNode source, EnumSet<CompatibilityFlags> flags) {
+        process(patch, new InPlaceApplyProcessor(JacksonVersionBridge.wrap(source), flags), flags);
+    }
+
+    /**
+     * Same as {@link #apply(JsonNode, JsonNode, EnumSet)}, without copying {@code source} up front: only the
+     * containers on the way to each change are copied, and every subtree the patch does not touch is shared
+     * between {@code source} and the result. {@code source} is left unchanged; as the two share nodes, neither
+     * should be modified in place while the other is still in use.
+     */
+    public static JsonNode applyWithSharing(JsonNode patch, JsonNode source, EnumSet<CompatibilityFlags> flags) throws JsonPatchApplicationException {
+        SharingApplyProcessor processor = new SharingApplyProcessor(JacksonVersionBridge.wrap(source), flags, FACTORY);
+        process(JacksonVersionBridge.wrap(patch), processor, flags, FACTORY);
+        return JacksonVersionBridge.unwrap(processor.result());
+    }
+
+    public static JsonNode applyWithSharing(JsonNode patch, JsonNode source) throws JsonPatchApplicationException {
+        return applyWithSharing(patch, source, CompatibilityFlags.defaults());
+    }
+
     public static void applyInPlace(JsonNode patch, JsonNode source) {
         applyInPlace(patch, source, CompatibilityFlags.defaults());
     }
@@ -63,4 +192,24 @@ public final class Jackson3JsonPatch extends AbstractJsonPatch {
         InPlaceApplyProcessor processor = new InPlaceApplyProcessor(JacksonVersionBridge.wrap(source), flags);
         process(JacksonVersionBridge.wrap(patch), processor, flags, FACTORY);
     }
+
+    public static void applyInPlaceAtomic(JsonNode patch, JsonNode source) {
+        applyInPlaceAtomic(patch, source, CompatibilityFlags.defaults());
+    }
+
+    /**
+     * Same as {@link #applyInPlace(JsonNode, JsonNode, EnumSet)}, but all or nothing: the inverse of each change
+     * is recorded as it is made, and if an operation fails, including a {@code test}, the changes already made
+     * are undone before the exception is rethrown, leaving {@code source} as it was.
+     */
+    public static void applyInPlaceAtomic(JsonNode patch, JsonNode source, EnumSet<CompatibilityFlags> flags) {
+        InPlaceApplyProcessor processor = new InPlaceApplyProcessor(JacksonVersionBridge.wrap(source), flags);
+        processor.recordUndo();
+        try {
+            process(JacksonVersionBridge.wrap(patch), processor, flags, FACTORY);
+        } catch (RuntimeException e) {
+            processor.rollback();
+            throw e;
+        }
+    }
 }
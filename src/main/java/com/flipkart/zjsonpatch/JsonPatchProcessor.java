@@ -25,4 +25,10 @@ interface JsonPatchProcessor {
     void move(JsonPointer fromPath, JsonPointer toPath) throws JsonPointerEvaluationException;
     void copy(JsonPointer fromPath, JsonPointer toPath) throws JsonPointerEvaluationException;
     void test(JsonPointer path, JsonNodeWrapper value) throws JsonPointerEvaluationException;
+
+    /**
+     * Completes any changes held back to be made together; called after the last operation, also when one failed.
+     */
+    default void flush() {
+    }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches the elements of two arrays by the value of an identity field and plans how to turn one
+ * order into the other.
+ * <p>
+ * Elements are joined through a hash map on their key, in O(N+M). The common elements that form a
+ * longest increasing run of target positions stay where they are; every other target element is
+ * either moved (common) or added (new) at an index that accounts for the elements already placed.
+ * Those indexes come from a Fenwick tree over "slots", a fixed order that contains every position
+ * an element can occupy while the plan is applied, so each placement costs O(log N).
+ */
+final class KeyedArrayAlignment {
+
+    private final String[] sourceKeys;
+    private final String[] targetKeys;
+    private final int[] targetIdxOfSource;
+    private final int[] sourceIdxOfTarget;
+
+    private KeyedArrayAlignment(String[] sourceKeys, String[] targetKeys, int[] targetIdxOfSource, int[] sourceIdxOfTarget) {
+        this.sourceKeys = sourceKeys;
+        this.targetKeys = targetKeys;
+        this.targetIdxOfSource = targetIdxOfSource;
+        this.sourceIdxOfTarget = sourceIdxOfTarget;
+    }
+
+    /**
+     * Joins {@code source} and {@code target} on {@code keyField}.
+     *
+     * @return the alignment, or {@code null} if an element is not an object with a non-empty scalar
+     * key, or a key occurs twice in the same array
+     */
+    static KeyedArrayAlignment of(List<JsonNodeWrapper> source, List<JsonNodeWrapper> target, String keyField) {
+        String[] sourceKeys = keys(source, keyField);
+        String[] targetKeys = sourceKeys == null ? null : keys(target, keyField);
+        if (targetKeys == null)
+            return null;
+
+        Map<String, Integer> sourceIdxByKey = new HashMap<String, Integer>(source.size() * 2);
+        for (int i = 0; i < sourceKeys.length; i++) {
+            if (sourceIdxByKey.put(sourceKeys[i], i) != null)
+                return null;
+        }
+        int[] targetIdxOfSource = new int[sourceKeys.length];
+        Arrays.fill(targetIdxOfSource, -1);
+        int[] sourceIdxOfTarget = new int[targetKeys.length];
+        Map<String, Integer> seen = new HashMap<String, Integer>(target.size() * 2);
+        for (int i = 0; i < targetKeys.length; i++) {
+            if (seen.put(targetKeys[i], i) != null)
+                return null;
+            Integer srcIdx = sourceIdxByKey.get(targetKeys[i]);
+            sourceIdxOfTarget[i] = srcIdx != null ? srcIdx : -1;
+            if (srcIdx != null)
+                targetIdxOfSource[srcIdx] = i;
+        }
+        return new KeyedArrayAlignment(sourceKeys, targetKeys, targetIdxOfSource, sourceIdxOfTarget);
+    }
+
+    private static String[] keys(List<JsonNodeWrapper> nodes, String keyField) {
+        String[] keys = new String[nodes.size()];
+        for (int i = 0; i < keys.length; i++) {
+            JsonNodeWrapper node = nodes.get(i);
+            String key = node.isObject() ? AbstractJsonPointer.keyValue(node, keyField) : null;
+            if (key == null || key.isEmpty())
+                return null;
+            keys[i] = key;
+        }
+        return keys;
+    }
+
+    String sourceKey(int srcIdx) {
+        return sourceKeys[srcIdx];
+    }
+
+    String targetKey(int targetIdx) {
+        return targetKeys[targetIdx];
+    }
+
+    /**
+     * @return the target index of the source element with the same key, or -1 if it was removed
+     */
+    int targetIdxOf(int srcIdx) {
+        return targetIdxOfSource[srcIdx];
+    }
+
+    /**
+     * @return the source index of the target element with the same key, or -1 if it was added
+     */
+    int sourceIdxOf(int targetIdx) {
+        return sourceIdxOfTarget[targetIdx];
+    }
+
+    /**
+     * Plans the placement of the target elements, assuming the removed source elements are gone
+     * and the common ones are still in source order.
+     *
+     * @return for each target index, the index it must be moved or added to when the target is
+     * walked in ascending order, or -1 if the element is already in place
+     */
+    int[] placements() {
+        int targetSize = targetKeys.length;
+        int[] commons = new int[targetSize];        // target indexes of common elements, in source order
+        int commonCount = 0;
+        for (int srcIdx = 0; srcIdx < sourceKeys.length; srcIdx++) {
+            if (targetIdxOfSource[srcIdx] >= 0)
+                commons[commonCount++] = targetIdxOfSource[srcIdx];
+        }
+        boolean[] stationary = longestIncreasingRun(commons, commonCount, targetSize);
+
+        // slots, per gap between two stationary elements: the target positions of the gap, then the
+        // current positions of the common elements still waiting there, then the next stationary one
+        int[] targetSlot = new int[targetSize];
+        int[] waitingSlot = new int[targetSize];
+        int slots = 0;
+        int targetIdx = 0;
+        int commonIdx = 0;
+        while (true) {
+            while (targetIdx < targetSize && !stationary[targetIdx])
+                targetSlot[targetIdx++] = slots++;
+            while (commonIdx < commonCount && !stationary[commons[commonIdx]])
+                waitingSlot[commons[commonIdx++]] = slots++;
+            if (targetIdx == targetSize)
+                break;
+            targetSlot[targetIdx++] = slots++;
+            commonIdx++;
+        }
+
+        int[] occupied = new int[slots + 1];
+        for (int i = 0; i < targetSize; i++) {
+            if (stationary[i])
+                update(occupied, targetSlot[i], 1);
+            else if (sourceIdxOfTarget[i] >= 0)
+                update(occupied, waitingSlot[i], 1);
+        }
+
+        int[] placements = new int[targetSize];
+        for (int i = 0; i < targetSize; i++) {
+            if (stationary[i]) {
+                placements[i] = -1;
+                continue;
+            }
+            if (sourceIdxOfTarget[i] >= 0)
+                update(occupied, waitingSlot[i], -1);
+            placements[i] = countBefore(occupied, targetSlot[i]);
+            update(occupied, targetSlot[i], 1);
+        }
+        return placements;
+    }
+
+    private static boolean[] longestIncreasingRun(int[] values, int count, int range) {
+        int[] tails = new int[count];               // index into values of the smallest tail per run length
+        int[] previous = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[tails[mid]] < values[i])
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length)
+                length++;
+        }
+        boolean[] inRun = new boolean[range];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            inRun[values[i]] = true;
+        }
+        return inRun;
+    }
+
+    private static void update(int[] tree, int slot, int delta) {
+        for (int node = slot + 1; node < tree.length; node += node & -node) {
+            tree[node] += delta;
+        }
+    }
+
+    private static int countBefore(int[] tree, int slot) {
+        int sum = 0;
+        for (int node = slot; node > 0; node -= node & -node) {
+            sum += tree[node];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shortest edit script between two sequences, after E. Myers, "An O(ND) Difference Algorithm
+ * and Its Variations" (1986).
+ * <p>
+ * Runs in O((N+M)·D) time, where D is the number of inserted and deleted elements, and only
+ * compares elements through {@link Equivalence}, so callers never have to materialize the
+ * common subsequence as values. The result is the list of matched index pairs in ascending
+ * order, which is exactly what {@code AbstractJsonDiff.compareArray} walks to emit its
+ * ADD / REMOVE / nested operations.
+ * <p>
+ * Backtracking needs the frontier of every edit level, which is O(D²) cells. Once that exceeds
+ * {@code maxTraceCells} the frontiers are dropped and the path is recovered from checkpoints
+ * instead: the frontier of a middle level is recomputed, the upper half is walked back from
+ * it, then the lower half, recursively. This keeps memory at O((N+M)·log D) for an extra
+ * log D factor in time, and replays the same greedy choices, so both modes return the same pairs.
+ * <p>
+ * A {@link DiffBudget} can cap the number of comparisons and stop the search on timeout or
+ * cancellation, in which case {@link #matches()} gives up and returns {@code null}.
+ */
+final class MyersDiff {
+
+    interface Equivalence {
+        boolean equivalent(int srcIdx, int targetIdx);
+    }
+
+    // below this many levels a checkpoint range is replayed into a plain trace
+    private static final int CHECKPOINT_SPAN = 16;
+    // comparisons between two looks at the budget's clock and cancellation flag
+    private static final int BUDGET_CHECK_INTERVAL = 4096;
+
+    private final int srcSize;
+    private final int targetSize;
+    private final Equivalence equivalence;
+    private final long maxTraceCells;
+    private final int offset;
+    private final DiffBudget budget;
+    private final long maxComparisons;
+    private long comparisons;
+
+    // backtracking cursor, pairs are collected back to front as (target, src)
+    private int[] pairs;
+    private int count;
+    private int x;
+    private int k;
+
+    MyersDiff(int srcSize, int targetSize, Equivalence equivalence) {
+        this(srcSize, targetSize, equivalence, Long.MAX_VALUE);
+    }
+
+    MyersDiff(int srcSize, int targetSize, Equivalence equivalence, long maxTraceCells) {
+        this(srcSize, targetSize, equivalence, maxTraceCells, null);
+    }
+
+    MyersDiff(int srcSize, int targetSize, Equivalence equivalence, long maxTraceCells, DiffBudget budget) {
+        this.srcSize = srcSize;
+        this.targetSize = targetSize;
+        this.equivalence = equivalence;
+        this.maxTraceCells = maxTraceCells;
+        this.offset = srcSize + targetSize + 1;
+        this.budget = budget;
+        this.maxComparisons = budget != null ? budget.getMaxArrayComparisons() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Computes the matched pairs of the shortest edit script.
+     *
+     * @return flattened pairs {@code [src0, target0, src1, target1, ...]}, ascending in both indexes,
+     * or {@code null} if the budget ran out first
+     */
+    int[] matches() {
+        if (srcSize == 0 || targetSize == 0)
+            return new int[0];
+        try {
+            return search();
+        } catch (BudgetExceeded e) {
+            return null;
+        }
+    }
+
+    private int[] search() {
+        int max = srcSize + targetSize;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<int[]>();
+        long traceCells = 0;
+
+        for (int d = 0; d <= max; d++) {
+            checkBudget();
+            if (step(v, d)) {
+                startBacktrack();
+                if (trace != null) {
+                    for (int level = d; level > 0; level--)
+                        backstep(trace.get(level - 1), level - 1, level);   // level d-1, diagonal i stored at [i + d - 1]
+                } else if (d > 0) {
+                    int[] base = new int[v.length];
+                    step(base, 0);
+                    backtrackFrom(base, 0, d);
+                }
+                return finishBacktrack();
+            }
+            if (trace != null) {
+                traceCells += 2 * d + 1;
+                if (traceCells > maxTraceCells)
+                    trace = null;
+                else
+                    // only diagonals -d..d are ever read back for this level
+                    trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+            }
+        }
+        throw new IllegalStateException("Edit script not found");
+    }
+
+    /**
+     * Advances the frontier {@code v} in place from level {@code d - 1} to level {@code d}.
+     *
+     * @return true if level {@code d} reaches the end of both sequences
+     */
+    private boolean step(int[] v, int d) {
+        for (int k = -d; k <= d; k += 2) {
+            int x;
+            if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]))
+                x = v[offset + k + 1];
+            else
+                x = v[offset + k - 1] + 1;
+            int y = x - k;
+            while (x < srcSize && y < targetSize && compare(x, y)) {
+                x++;
+                y++;
+            }
+            v[offset + k] = x;
+            if (x >= srcSize && y >= targetSize)
+                return true;
+        }
+        return false;
+    }
+
+    private boolean compare(int srcIdx, int targetIdx) {
+        if (++comparisons > maxComparisons)
+            throw BudgetExceeded.INSTANCE;
+        if (comparisons % BUDGET_CHECK_INTERVAL == 0)
+            checkBudget();
+        return equivalence.equivalent(srcIdx, targetIdx);
+    }
+
+    private void checkBudget() {
+        if (budget != null && (budget.isCancelled() || budget.isExpired()))
+            throw BudgetExceeded.INSTANCE;
+    }
+
+    /**
+     * Walks the cursor back from level {@code to} to level {@code from}, given the frontier of
+     * level {@code from}.
+     */
+    private void backtrackFrom(int[] base, int from, int to) {
+        if (to - from <= CHECKPOINT_SPAN) {
+            int[][] levels = new int[to - from][];
+            int[] v = base.clone();
+            levels[0] = base;
+            for (int level = from + 1; level < to; level++) {
+                step(v, level);
+                levels[level - from] = v.clone();
+            }
+            for (int level = to; level > from; level--)
+                backstep(levels[level - 1 - from], offset, level);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        int[] v = base.clone();
+        for (int level = from + 1; level <= mid; level++)
+            step(v, level);
+        backtrackFrom(v, mid, to);
+        backtrackFrom(base, from, mid);
+    }
+
+    private void startBacktrack() {
+        pairs = new int[2 * Math.min(srcSize, targetSize)];
+        count = 0;
+        x = srcSize;
+        k = srcSize - targetSize;
+    }
+
+    /**
+     * Moves the cursor from level {@code d} to level {@code d - 1}, emitting the snake in between.
+     * {@code prev} holds the frontier of level {@code d - 1} with diagonal i at {@code prev[i + base]}.
+     */
+    private void backstep(int[] prev, int base, int d) {
+        int prevK;
+        if (k == -d || (k != d && prev[k - 1 + base] < prev[k + 1 + base]))
+            prevK = k + 1;
+        else
+            prevK = k - 1;
+        int prevX = prev[prevK + base];
+        int snakeStart = prevK == k + 1 ? prevX : prevX + 1;
+        while (x > snakeStart) {
+            x--;
+            pairs[count++] = x - k;
+            pairs[count++] = x;
+        }
+        x = prevX;
+        k = prevK;
+    }
+
+    private int[] finishBacktrack() {
+        while (x > 0) {
+            x--;
+            pairs[count++] = x - k;
+            pairs[count++] = x;
+        }
+
+        // flip into ascending (src, target)
+        int[] result = new int[count];
+        for (int i = 0; i < count; i += 2) {
+            result[count - i - 2] = pairs[i + 1];
+            result[count - i - 1] = pairs[i];
+        }
+        pairs = null;
+        return result;
+    }
+
+    // unwinds the search without building a stack trace
+    private static final class BudgetExceeded extends RuntimeException {
+        private static final BudgetExceeded INSTANCE = new BudgetExceeded();
+
+        private BudgetExceeded() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Structural hashes and node counts of JSON subtrees, computed bottom-up once and memoized by node identity.
+ * <p>
+ * Wrappers are recreated on every {@code get}, so entries are keyed on the underlying Jackson node.
+ * Equal trees always hash equal (object hashes do not depend on field order, like Jackson's
+ * {@code equals}), which lets {@link #equivalent} reject most unequal pairs without walking them.
+ * Not thread-safe while computing; one instance lives for the duration of a single diff. Once the
+ * source and target roots have been hashed, lookups of their descendants only read and may run on
+ * several threads.
+ */
+final class NodeFingerprints {
+
+    private static final int ARRAY_SEED = 0x5bd1e995;
+    private static final int OBJECT_SEED = 0x27d4eb2d;
+
+    private final Map<Object, Fingerprint> fingerprints = new IdentityHashMap<Object, Fingerprint>();
+
+    /**
+     * Returns the fingerprint of {@code node}, computing and caching it for the whole subtree
+     * if it was not seen before.
+     */
+    int hash(JsonNodeWrapper node) {
+        return fingerprint(node).hash;
+    }
+
+    /**
+     * Returns the number of nodes in the subtree rooted at {@code node}, itself included.
+     */
+    int nodeCount(JsonNodeWrapper node) {
+        return fingerprint(node).nodes;
+    }
+
+    /**
+     * Same result as {@code a.equals(b)}: identical nodes are equal, differing fingerprints are
+     * not, and only a fingerprint match falls back to a deep comparison.
+     */
+    boolean equivalent(JsonNodeWrapper a, JsonNodeWrapper b) {
+        if (a.getUnderlyingNode() == b.getUnderlyingNode())
+            return true;
+        if (hash(a) != hash(b))
+            return false;
+        return a.equals(b);
+    }
+
+    private Fingerprint fingerprint(JsonNodeWrapper node) {
+        Fingerprint fingerprint = fingerprints.get(node.getUnderlyingNode());
+        return fingerprint != null ? fingerprint : compute(node);
+    }
+
+    private Fingerprint compute(JsonNodeWrapper node) {
+        int hash;
+        int nodes = 1;
+        if (node.isArray()) {
+            hash = ARRAY_SEED;
+            for (JsonNodeWrapper child : node) {
+                Fingerprint childFingerprint = fingerprint(child);
+                hash = 31 * hash + childFingerprint.hash;
+                nodes += childFingerprint.nodes;
+            }
+        } else if (node.isObject()) {
+            // fields are summed so that the order they were inserted in does not matter
+            hash = OBJECT_SEED;
+            Iterator<String> fieldNames = node.fieldNames();
+            while (fieldNames.hasNext()) {
+                String name = fieldNames.next();
+                Fingerprint childFingerprint = fingerprint(node.get(name));
+                hash += mix(name.hashCode() * 31 + childFingerprint.hash);
+                nodes += childFingerprint.nodes;
+            }
+        } else {
+            hash = node.hashCode();
+        }
+        Fingerprint fingerprint = new Fingerprint(hash, nodes);
+        fingerprints.put(node.getUnderlyingNode(), fingerprint);
+        return fingerprint;
+    }
+
+    private static final class Fingerprint {
+        private final int hash;
+        private final int nodes;
+
+        private Fingerprint(int hash, int nodes) {
+            this.hash = hash;
+            this.nodes = nodes;
+        }
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+}
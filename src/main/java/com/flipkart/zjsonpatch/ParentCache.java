@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+
+/**
+ * The containers the latest operations of a patch were applied to, by pointer, so that an operation on a
+ * sibling finds its parent without walking from the document root. An entry is dropped when a change could
+ * make its pointer resolve to another node: a change to a container above it, unless that is an object
+ * and the changed member is not on the way to the entry, and any change inside an array the entry or the
+ * change finds its element of by key, as that may change which element holds the key, or be to the element
+ * the other finds by index.
+ */
+class ParentCache {
+
+    private static final int SIZE = 4;
+
+    private final RefToken[][] tokens = new RefToken[SIZE][];
+    private final int[] lengths = new int[SIZE];
+    private final JsonNodeWrapper[] nodes = new JsonNodeWrapper[SIZE];
+    private int next;
+
+    /**
+     * @param path the tokens of a pointer; its parent is all but the last
+     * @return the container at the parent of {@code path}, or {@code null} if it is not cached
+     */
+    JsonNodeWrapper get(RefToken[] path) {
+        int length = path.length - 1;
+        for (int i = 0; i < SIZE; i++) {
+            if (nodes[i] != null && lengths[i] == length && startsWith(tokens[i], path, length))
+                return nodes[i];
+        }
+        return null;
+    }
+
+    void put(RefToken[] path, JsonNodeWrapper parent) {
+        tokens[next] = path;
+        lengths[next] = path.length - 1;
+        nodes[next] = parent;
+        next = (next + 1) % SIZE;
+    }
+
+    /**
+     * Drops the entries the change of the member {@code path} points to may have moved.
+     *
+     * @param parentIsObject whether the parent of {@code path} is an object, whose other members stay in place
+     */
+    void changed(RefToken[] path, boolean parentIsObject) {
+        int depth = path.length - 1;
+        RefToken member = path[depth];
+        for (int i = 0; i < SIZE; i++) {
+            if (nodes[i] == null)
+                continue;
+            if (lengths[i] > depth && startsWith(tokens[i], path, depth)) {
+                if (!parentIsObject || tokens[i][depth].equals(member))
+                    nodes[i] = null;
+            } else if (underKeyRef(tokens[i], lengths[i], path, depth)) {
+                nodes[i] = null;
+            }
+        }
+    }
+
+    // whether entry and path go through the same array, one of them finding its element by key, in which case
+    // both may go through the same element whatever the other finds it by
+    private static boolean underKeyRef(RefToken[] entry, int length, RefToken[] path, int depth) {
+        for (int k = 0; k < length && k < depth; k++) {
+            if (entry[k].isArrayKeyRef() || path[k].isArrayKeyRef())
+                return true;
+            if (!entry[k].equals(path[k]))
+                return false;
+        }
+        return false;
+    }
+
+    void clear() {
+        for (int i = 0; i < SIZE; i++) {
+            nodes[i] = null;
+        }
+    }
+
+    static boolean startsWith(RefToken[] tokens, RefToken[] prefix, int length) {
+        if (tokens == prefix)
+            return true;
+        for (int i = 0; i < length; i++) {
+            if (!tokens[i].equals(prefix[i]))
+                return false;
+        }
+        return true;
+    }
+}
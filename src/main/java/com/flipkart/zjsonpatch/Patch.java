@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.ArrayNodeWrapper;
+import com.flipkart.zjsonpatch.mapping.JacksonVersionBridge;
+import com.flipkart.zjsonpatch.mapping.JsonNodeFactoryWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An immutable JSON Patch as a list of typed operations, with pointers already parsed. A patch returned by
+ * {@link JsonDiff#asPatch} or {@link Jackson3JsonDiff#asPatch} can be handed to {@link JsonPatch#apply(Patch, com.fasterxml.jackson.databind.JsonNode)}
+ * or {@link Jackson3JsonPatch#apply(Patch, tools.jackson.databind.JsonNode)} without going through a patch document.
+ *
+ * <p>Operation values are shared with the documents the patch was built from, not copied; applying the
+ * patch copies them into the result, unless {@link CompatibilityFlags#TRANSFER_VALUE_OWNERSHIP} is set.
+ *
+ * @param <N> the {@code JsonNode} type of the Jackson line the patch was built with
+ */
+public final class Patch<N> implements Iterable<PatchOperation<N>> {
+
+    private final List<PatchOperation<N>> operations;
+    private final JsonNodeFactoryWrapper factory;
+
+    Patch(List<PatchOperation<N>> operations, JsonNodeFactoryWrapper factory) {
+        this.operations = Collections.unmodifiableList(operations);
+        this.factory = factory;
+    }
+
+    /**
+     * @return the operations in the order they are applied, as an unmodifiable list
+     */
+    public List<PatchOperation<N>> getOperations() {
+        return operations;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    @Override
+    public Iterator<PatchOperation<N>> iterator() {
+        return operations.iterator();
+    }
+
+    /**
+     * @return the RFC 6902 patch document, the same as the {@code asJson} counterpart of the call that built this patch
+     */
+    public N toJson() {
+        ArrayNodeWrapper patch = factory.arrayNode();
+        DiffSink<JsonNodeWrapper> builder = AbstractJsonDiff.patchBuilder(factory, patch::add);
+        for (PatchOperation<N> operation : operations) {
+            JsonPointer from = operation.from();
+            builder.accept(operation.getOperation(), from != null ? from.toString() : null, operation.path().toString(),
+                    operation.value(), operation.fromValue());
+        }
+        return JacksonVersionBridge.unwrap(patch);
+    }
+
+    JsonNodeFactoryWrapper factory() {
+        return factory;
+    }
+
+    @Override
+    public String toString() {
+        return toJson().toString();
+    }
+}
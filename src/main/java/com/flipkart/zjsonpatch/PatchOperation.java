@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.JacksonVersionBridge;
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+
+/**
+ * One operation of a {@link Patch}. Which members are set follows the patch document: {@link #getFrom()} only for
+ * {@code move} and {@code copy}, {@link #getFromValue()} only for {@code replace} built with
+ * {@link DiffFlags#ADD_ORIGINAL_VALUE_ON_REPLACE}, and {@link #getValue()} wherever the document would carry one.
+ *
+ * @param <N> the {@code JsonNode} type of the Jackson line the patch was built with
+ */
+public final class PatchOperation<N> {
+
+    private final Operation operation;
+    private final JsonPointer from;
+    private final JsonPointer path;
+    private final JsonNodeWrapper value;
+    private final JsonNodeWrapper fromValue;
+
+    PatchOperation(Operation operation, AbstractJsonPointer from, AbstractJsonPointer path, JsonNodeWrapper value, JsonNodeWrapper fromValue) {
+        this.operation = operation;
+        this.from = from != null ? toJsonPointer(from) : null;
+        this.path = toJsonPointer(path);
+        this.value = value;
+        this.fromValue = fromValue;
+    }
+
+    // the apply processors work on JsonPointer whichever Jackson line built the pointer
+    private static JsonPointer toJsonPointer(AbstractJsonPointer pointer) {
+        if (pointer instanceof JsonPointer)
+            return (JsonPointer) pointer;
+        return pointer.isRoot() ? JsonPointer.ROOT : new JsonPointer(pointer.decompose());
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return the source pointer of a {@code move} or {@code copy}, {@code null} for other operations
+     */
+    public AbstractJsonPointer getFrom() {
+        return from;
+    }
+
+    public AbstractJsonPointer getPath() {
+        return path;
+    }
+
+    /**
+     * @return the operation's value, or {@code null} if it carries none
+     */
+    public N getValue() {
+        return JacksonVersionBridge.unwrap(value);
+    }
+
+    /**
+     * @return the value a {@code replace} overwrites, or {@code null} if it was not recorded
+     */
+    public N getFromValue() {
+        return JacksonVersionBridge.unwrap(fromValue);
+    }
+
+    JsonPointer from() {
+        return from;
+    }
+
+    JsonPointer path() {
+        return path;
+    }
+
+    JsonNodeWrapper value() {
+        return value;
+    }
+
+    JsonNodeWrapper fromValue() {
+        return fromValue;
+    }
+
+    @Override
+    public String toString() {
+        return operation.rfcName() + (from != null ? " " + from + " ->" : "") + " " + path;
+    }
+}
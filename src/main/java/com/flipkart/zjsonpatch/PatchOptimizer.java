@@ -0,0 +1,333 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rewrites a patch into a shorter one with the same result on every document the original patch applies to.
+ * <p>
+ * Operations are taken in patch order, and each is checked against the operations kept so far, looking back past
+ * those it is independent of: those that neither read nor change anything at, above or below its pointers, nor
+ * insert into or remove from an array its pointers go through, nor add a member to an object it adds one to. It is
+ * then
+ * <ul>
+ *     <li>applied to the value of an earlier {@code add} or {@code replace} of a value it lies within, by an
+ *     {@link InPlaceApplyProcessor} over that value, so a {@code test} that passes on it is dropped;</li>
+ *     <li>for a {@code replace}, merged into an earlier {@code add} or {@code replace} of the same path;</li>
+ *     <li>for a {@code remove}, let go of an earlier {@code replace} of the same path, unless replacing may add a
+ *     missing member, and of an earlier {@code add} along with itself when the value added was removed before;</li>
+ *     <li>for a {@code replace} or {@code remove}, let go of earlier changes within the value it overwrites.</li>
+ * </ul>
+ * Pointers with key references or {@code "-"} are never merged, as what they refer to depends on the document. An
+ * {@code add} followed by a {@code remove} of an object member is otherwise kept, since the member may have been
+ * there before the {@code add}. A patch that fails on a document may fail elsewhere, or not at all, once optimized.
+ *
+ * @param <N> the {@code JsonNode} type of the Jackson line the patch was built with
+ */
+final class PatchOptimizer<N> {
+
+    private final EnumSet<CompatibilityFlags> flags;
+    private final List<PatchOperation<N>> operations = new ArrayList<PatchOperation<N>>();
+    // values built here by applying operations to them, which no one else holds
+    private final Set<JsonNodeWrapper> owned = Collections.newSetFromMap(new IdentityHashMap<JsonNodeWrapper, Boolean>());
+
+    private PatchOptimizer(EnumSet<CompatibilityFlags> flags) {
+        this.flags = flags;
+    }
+
+    /**
+     * @param flags the flags the optimized patch is to be applied with
+     */
+    static <N> Patch<N> optimize(Patch<N> patch, EnumSet<CompatibilityFlags> flags) {
+        PatchOptimizer<N> optimizer = new PatchOptimizer<N>(flags);
+        for (PatchOperation<N> operation : patch) {
+            optimizer.add(operation);
+        }
+        return new Patch<N>(optimizer.operations, patch.factory());
+    }
+
+    private void add(PatchOperation<N> operation) {
+        if (fold(operation))
+            return;
+        Operation type = operation.getOperation();
+        RefToken[] path = operation.path().getTokens();
+        if ((type == Operation.REPLACE || type == Operation.REMOVE && path.length > 0) && isPlain(path)
+                && supersede(operation, path))
+            return;
+        operations.add(operation);
+    }
+
+    /**
+     * Applies {@code operation} to the value of the last write it lies within.
+     *
+     * @return whether it was applied, and so is not to be kept
+     */
+    private boolean fold(PatchOperation<N> operation) {
+        for (int i = operations.size() - 1; i >= 0; i--) {
+            PatchOperation<N> earlier = operations.get(i);
+            if (holds(earlier, operation)) {
+                JsonNodeWrapper value = applyTo(earlier.value(), operation, earlier.path().size());
+                if (value == null)
+                    return false;
+                owned.add(value);
+                operations.set(i, new PatchOperation<N>(earlier.getOperation(), null, earlier.path(), value, earlier.fromValue()));
+                return true;
+            }
+            if (interferes(earlier, operation))
+                return false;
+        }
+        return false;
+    }
+
+    // whether write sets a value every pointer of operation lies within, or a test checks as a whole
+    private static boolean holds(PatchOperation<?> write, PatchOperation<?> operation) {
+        if (write.getOperation() != Operation.ADD && write.getOperation() != Operation.REPLACE)
+            return false;
+        RefToken[] prefix = write.path().getTokens();
+        if (!isPlain(prefix))
+            return false;
+        for (JsonPointer pointer : pointers(operation)) {
+            RefToken[] tokens = pointer.getTokens();
+            boolean within = tokens.length > prefix.length
+                    || tokens.length == prefix.length && operation.getOperation() == Operation.TEST;
+            if (!within || !ParentCache.startsWith(tokens, prefix, prefix.length))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the value with {@code operation} applied, or {@code null} if it cannot be applied, in which case the
+     * patch fails there whatever the document
+     */
+    private JsonNodeWrapper applyTo(JsonNodeWrapper value, PatchOperation<?> operation, int depth) {
+        boolean inPlace = owned.contains(value);
+        InPlaceApplyProcessor processor = new InPlaceApplyProcessor(inPlace ? value : value.deepCopy(), flags);
+        if (inPlace)
+            processor.recordUndo();
+        try {
+            try {
+                JsonPointer path = relative(operation.path(), depth);
+                switch (operation.getOperation()) {
+                    case REMOVE:
+                        processor.remove(path);
+                        break;
+                    case ADD:
+                        processor.add(path, operation.value().deepCopy());
+                        break;
+                    case REPLACE:
+                        processor.replace(path, operation.value().deepCopy());
+                        break;
+                    case MOVE:
+                        processor.move(relative(operation.from(), depth), path);
+                        break;
+                    case COPY:
+                        processor.copy(relative(operation.from(), depth), path);
+                        break;
+                    case TEST:
+                        processor.test(path, operation.value());
+                        break;
+                }
+            } finally {
+                processor.flush();
+            }
+        } catch (JsonPointerEvaluationException | RuntimeException e) {
+            if (inPlace)
+                processor.rollback();
+            return null;
+        }
+        return processor.result();
+    }
+
+    private static JsonPointer relative(JsonPointer pointer, int depth) {
+        RefToken[] tokens = pointer.getTokens();
+        return new JsonPointer(Arrays.asList(tokens).subList(depth, tokens.length));
+    }
+
+    /**
+     * Lets go of the earlier operations a {@code replace} or {@code remove} at {@code path} makes redundant.
+     *
+     * @return whether {@code operation} was merged into an earlier one, or cancelled out with it
+     */
+    private boolean supersede(PatchOperation<N> operation, RefToken[] path) {
+        for (int i = operations.size() - 1; i >= 0; i--) {
+            PatchOperation<N> earlier = operations.get(i);
+            if (isWithin(earlier, path)) {
+                operations.remove(i);
+                continue;
+            }
+            Operation type = earlier.getOperation();
+            if ((type == Operation.ADD || type == Operation.REPLACE) && Arrays.equals(earlier.path().getTokens(), path)) {
+                if (operation.getOperation() == Operation.REPLACE) {
+                    operations.set(i, new PatchOperation<N>(type, null, earlier.path(), operation.value(), earlier.fromValue()));
+                    return true;
+                }
+                if (type == Operation.REPLACE) {
+                    // a replace that may add a missing member is what lets a remove that forbids one succeed
+                    if (flags.contains(CompatibilityFlags.ALLOW_MISSING_TARGET_OBJECT_ON_REPLACE))
+                        return false;
+                    operations.remove(i);
+                    continue;
+                }
+                if (!removedBefore(i, path) || shiftsLater(i))
+                    return false;
+                operations.remove(i);
+                return true;
+            }
+            if (interferes(earlier, path))
+                return false;
+        }
+        return false;
+    }
+
+    // whether operation only changes what lies strictly within the value at path
+    private static boolean isWithin(PatchOperation<?> operation, RefToken[] path) {
+        if (operation.getOperation() == Operation.TEST)
+            return false;
+        for (JsonPointer pointer : pointers(operation)) {
+            RefToken[] tokens = pointer.getTokens();
+            if (tokens.length <= path.length || !ParentCache.startsWith(tokens, path, path.length))
+                return false;
+        }
+        return true;
+    }
+
+    // whether the operations kept before index remove the value at path, with nothing between putting it back
+    private boolean removedBefore(int index, RefToken[] path) {
+        for (int i = index - 1; i >= 0; i--) {
+            PatchOperation<N> earlier = operations.get(i);
+            if (earlier.getOperation() == Operation.REMOVE && Arrays.equals(earlier.path().getTokens(), path))
+                return true;
+            if (interferes(earlier, path))
+                return false;
+        }
+        return false;
+    }
+
+    // whether the operations kept after index depend on the one at index
+    private boolean shiftsLater(int index) {
+        for (int i = index + 1; i < operations.size(); i++) {
+            if (interferes(operations.get(index), operations.get(i)))
+                return true;
+        }
+        return false;
+    }
+
+    // whether the two operations may not be swapped
+    private boolean interferes(PatchOperation<?> earlier, PatchOperation<?> operation) {
+        for (JsonPointer pointer : pointers(operation)) {
+            if (interferes(earlier, pointer.getTokens()))
+                return true;
+        }
+        for (JsonPointer pointer : pointers(earlier)) {
+            if (interferes(operation, pointer.getTokens()))
+                return true;
+            // members are added at the end of their object, so two additions to one object keep their order
+            if (inserts(earlier, pointer)) {
+                for (JsonPointer other : pointers(operation)) {
+                    if (inserts(operation, other) && other.size() == pointer.size()
+                            && ParentCache.startsWith(other.getTokens(), pointer.getTokens(), pointer.size() - 1))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // whether operation may add a member at pointer
+    private boolean inserts(PatchOperation<?> operation, JsonPointer pointer) {
+        if (pointer != operation.path() || pointer.isRoot())
+            return false;
+        switch (operation.getOperation()) {
+            case ADD:
+            case MOVE:
+            case COPY:
+                return true;
+            case REPLACE:
+                return flags.contains(CompatibilityFlags.ALLOW_MISSING_TARGET_OBJECT_ON_REPLACE);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return whether {@code operation} reads or changes anything at, above or below {@code path}, or inserts into
+     * or removes from an array {@code path} goes through
+     */
+    private static boolean interferes(PatchOperation<?> operation, RefToken[] path) {
+        RefToken[] scope = scope(path);
+        for (JsonPointer pointer : pointers(operation)) {
+            RefToken[] tokens = pointer.getTokens();
+            RefToken[] touched = scope(tokens);
+            int length = Math.min(touched.length, scope.length);
+            if (ParentCache.startsWith(touched, scope, length))
+                return true;
+            if (shiftsElements(operation, pointer) && tokens.length <= path.length
+                    && ParentCache.startsWith(path, tokens, tokens.length - 1))
+                return true;
+        }
+        return false;
+    }
+
+    // whether the value at pointer may be an array element that operation inserts or removes
+    private static boolean shiftsElements(PatchOperation<?> operation, JsonPointer pointer) {
+        if (pointer.isRoot())
+            return false;
+        switch (operation.getOperation()) {
+            case ADD:
+            case REMOVE:
+            case MOVE:
+                break;
+            case COPY:
+                if (pointer != operation.path())
+                    return false;
+                break;
+            default:
+                return false;
+        }
+        RefToken last = pointer.last();
+        return last.isArrayIndex() || last.isArrayKeyRef();
+    }
+
+    // the part of tokens that refers to the same value in any document
+    private static RefToken[] scope(RefToken[] tokens) {
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].isArrayKeyRef() || tokens[i].isArrayIndex() && tokens[i].getIndex() == JsonPointer.LAST_INDEX)
+                return Arrays.copyOf(tokens, i);
+        }
+        return tokens;
+    }
+
+    private static boolean isPlain(RefToken[] tokens) {
+        return scope(tokens) == tokens;
+    }
+
+    private static List<JsonPointer> pointers(PatchOperation<?> operation) {
+        return operation.from() != null ? Arrays.asList(operation.from(), operation.path())
+                : Collections.singletonList(operation.path());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.JsonGeneratorWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+
+/**
+ * Writes operations to a generator as patch objects, with the same members in the same order as
+ * the patch document built by the diff.
+ * <p>
+ * Pointers are encoded into one reused buffer and written from there, so no string is created per
+ * pointer. Not thread-safe.
+ */
+final class PatchWriter implements AbstractJsonDiff.OperationHandler {
+
+    private final JsonGeneratorWrapper generator;
+    private final StringBuilder pointer = new StringBuilder();
+    private char[] buffer = new char[64];
+
+    PatchWriter(JsonGeneratorWrapper generator) {
+        this.generator = generator;
+    }
+
+    @Override
+    public void accept(Operation operation, AbstractJsonPointer from, AbstractJsonPointer path, JsonNodeWrapper value, JsonNodeWrapper fromValue) {
+        generator.writeStartObject();
+        generator.writeFieldName(Constants.OP);
+        generator.writeString(operation.rfcName());
+        if (from != null) {
+            generator.writeFieldName(Constants.FROM);
+            writePointer(from);
+        }
+        if (fromValue != null) {
+            generator.writeFieldName(Constants.FROM_VALUE);
+            generator.writeTree(fromValue);
+        }
+        generator.writeFieldName(Constants.PATH);
+        writePointer(path);
+        if (value != null) {
+            generator.writeFieldName(Constants.VALUE);
+            generator.writeTree(value);
+        }
+        generator.writeEndObject();
+    }
+
+    private void writePointer(AbstractJsonPointer path) {
+        pointer.setLength(0);
+        path.appendTo(pointer);
+        int length = pointer.length();
+        if (buffer.length < length)
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        pointer.getChars(0, length, buffer, 0);
+        generator.writeString(buffer, 0, length);
+    }
+}
@@ -45,15 +45,24 @@ public class RefToken {
         return DECODED_EQUALS_PATTERN.matcher(path).replaceAll("=");
     }
 
-    private static final Pattern ENCODED_TILDA_PATTERN = Pattern.compile("~");
-    private static final Pattern ENCODED_SLASH_PATTERN = Pattern.compile("/");
-    private static final Pattern ENCODED_EQUALS_PATTERN = Pattern.compile("=");
-
-    private static String encodePath(Object object) {
-        String path = object.toString(); // see http://tools.ietf.org/html/rfc6901#section-4
-        path = ENCODED_TILDA_PATTERN.matcher(path).replaceAll("~0");
-        path = ENCODED_SLASH_PATTERN.matcher(path).replaceAll("~1");
-        return ENCODED_EQUALS_PATTERN.matcher(path).replaceAll("~2");
+    // see http://tools.ietf.org/html/rfc6901#section-4, plus '=' which separates key references
+    private static void encodePath(String path, StringBuilder sb) {
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            switch (c) {
+                case '~':
+                    sb.append("~0");
+                    break;
+                case '/':
+                    sb.append("~1");
+                    break;
+                case '=':
+                    sb.append("~2");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
     }
 
     private static final Pattern VALID_ARRAY_IND = Pattern.compile("-|0|(?:[1-9][0-9]*)");
@@ -109,15 +118,26 @@ public class RefToken {
         return decodedToken;
     }
 
-    @Override
-    public String toString() {
+    /**
+     * Appends the encoded form of this token, as returned by {@link #toString()}, to {@code sb}.
+     */
+    void appendTo(StringBuilder sb) {
         if (isArrayKeyRef()) {
-            return encodePath(keyRef.key) + "=" + encodePath(keyRef.value);
+            encodePath(keyRef.key, sb);
+            sb.append('=');
+            encodePath(keyRef.value, sb);
         } else {
-            return encodePath(decodedToken);
+            encodePath(decodedToken, sb);
         }
     }
 
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(decodedToken.length() + 2);
+        appendTo(sb);
+        return sb.toString();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
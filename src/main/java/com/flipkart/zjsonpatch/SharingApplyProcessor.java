@@ -0,0 +1,94 @@
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.ArrayNodeWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonNodeFactoryWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+import com.flipkart.zjsonpatch.mapping.ObjectNodeWrapper;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Applies a patch copy-on-write: the result starts out as the source itself, and before each change the
+ * containers on the way to it are copied one level deep. Subtrees the patch does not touch stay shared
+ * with the source, which is never modified.
+ */
+class SharingApplyProcessor extends InPlaceApplyProcessor {
+
+    private final JsonNodeFactoryWrapper factory;
+    // containers created by this processor, which are safe to modify; keyed on the underlying nodes
+    private final Set<Object> owned = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+    SharingApplyProcessor(JsonNodeWrapper target, EnumSet<CompatibilityFlags> flags, JsonNodeFactoryWrapper factory) {
+        super(target, flags);
+        this.factory = factory;
+    }
+
+    @Override
+    protected boolean allowRootReplacement() {
+        return true;
+    }
+
+    @Override
+    protected JsonNodeWrapper parentForUpdate(JsonPointer path) throws JsonPointerEvaluationException {
+        JsonPointer parentPath = path.getParent();
+        // reports a missing parent the same way as applying in place would, before anything is copied
+        parentPath.evaluate(result());
+
+        JsonNodeWrapper current = own(result());
+        setTarget(current);
+        for (RefToken token : parentPath.getTokens()) {
+            if (current.isArray()) {
+                int index = token.isArrayKeyRef() ? AbstractJsonPointer.indexOf(token.getKeyRef(), current) : token.getIndex();
+                JsonNodeWrapper child = current.get(index);
+                JsonNodeWrapper ownedChild = own(child);
+                if (ownedChild != child)
+                    current.arrayValue().set(index, ownedChild);
+                current = ownedChild;
+            } else {
+                JsonNodeWrapper child = current.get(token.getField());
+                JsonNodeWrapper ownedChild = own(child);
+                if (ownedChild != child)
+                    current.objectValue().set(token.getField(), ownedChild);
+                current = ownedChild;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * A container no change has been made below is still shared with the source as a whole, so it can be
+     * placed at the destination as it is; a later change under either place copies it again.
+     */
+    @Override
+    protected JsonNodeWrapper copyOf(JsonNodeWrapper value) {
+        return owned.contains(value.getUnderlyingNode()) ? value.deepCopy() : value;
+    }
+
+    private JsonNodeWrapper own(JsonNodeWrapper node) {
+        if (!node.isContainerNode() || owned.contains(node.getUnderlyingNode()))
+            return node;
+
+        JsonNodeWrapper copy;
+        if (node.isArray()) {
+            ArrayNodeWrapper array = factory.arrayNode();
+            for (JsonNodeWrapper element : node) {
+                array.add(element);
+            }
+            copy = array;
+        } else {
+            ObjectNodeWrapper object = factory.objectNode();
+            Iterator<String> fieldNames = node.fieldNames();
+            while (fieldNames.hasNext()) {
+                String fieldName = fieldNames.next();
+                object.set(fieldName, node.get(fieldName));
+            }
+            copy = object;
+        }
+        owned.add(copy.getUnderlyingNode());
+        return copy;
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.JsonGeneratorWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonNodeFactoryWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonParserWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonTokenWrapper;
+import com.flipkart.zjsonpatch.mapping.ObjectNodeWrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies a patch to a document read from a token stream, writing the result to a generator as it goes.
+ * <p>
+ * Each operation is anchored at the value it changes: the value at its path, or for {@code move} and {@code copy}
+ * the closest container holding both of its ends. The document is copied token by token, and only a value that
+ * anchors operations is read into a tree, has those operations applied in patch order, and is written back in its
+ * place; a value the first of them replaces or removes as a whole is skipped instead of read. Members added to an
+ * object are written at its end, as applying in memory would. An array is read whole if operations insert into or
+ * remove from it, or address its elements other than by index, as those change what the indexes of the others
+ * refer to; otherwise its elements are patched one by one like the members of an object.
+ * <p>
+ * Operations under different anchors are independent of each other, so the result is the same as applying the
+ * patch in memory. When an operation fails, the exception reports its path in the document, but the output
+ * written so far is incomplete.
+ */
+final class StreamingApply {
+
+    private final List<? extends PatchOperation<?>> operations;
+    private final EnumSet<CompatibilityFlags> flags;
+    private final JsonNodeFactoryWrapper factory;
+    private final Anchor root = new Anchor(null, null);
+
+    StreamingApply(Patch<?> patch, EnumSet<CompatibilityFlags> flags) {
+        this.operations = patch.getOperations();
+        this.flags = flags;
+        this.factory = patch.factory();
+        for (int i = 0; i < operations.size(); i++) {
+            PatchOperation<?> operation = operations.get(i);
+            RefToken[] anchor = operation.path().getTokens();
+            if (operation.getOperation() == Operation.MOVE || operation.getOperation() == Operation.COPY)
+                anchor = commonParent(operation.from().getTokens(), anchor);
+            Anchor node = root;
+            for (RefToken token : anchor) {
+                node = node.child(token);
+            }
+            node.operations.add(i);
+        }
+    }
+
+    private static RefToken[] commonParent(RefToken[] from, RefToken[] path) {
+        int length = 0;
+        while (length < from.length - 1 && length < path.length - 1 && from[length].equals(path[length])) {
+            length++;
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    void apply(JsonParserWrapper source, JsonGeneratorWrapper target) {
+        JsonTokenWrapper token = source.currentToken() != null ? source.currentToken() : source.nextToken();
+        if (token == null)
+            throw new IllegalArgumentException("No document to apply the patch to");
+        if (root.operations.isEmpty() && streams(root, token)) {
+            copyContainer(root, source, target);
+            return;
+        }
+        InPlaceApplyProcessor processor = new InPlaceApplyProcessor(source.readTree(), flags) {
+            @Override
+            protected boolean allowRootReplacement() {
+                return true;
+            }
+        };
+        run(root.collectOperations(), processor);
+        target.writeTree(processor.result());
+    }
+
+    // whether the value starting at token can be copied around the anchors below node rather than read whole
+    private boolean streams(Anchor node, JsonTokenWrapper token) {
+        if (token == JsonTokenWrapper.START_OBJECT)
+            return true;
+        if (token != JsonTokenWrapper.START_ARRAY)
+            return node.children.isEmpty();
+        for (Anchor child : node.children.values()) {
+            if (!child.token.isArrayIndex() || child.token.getIndex() < 0)
+                return false;
+            for (int index : child.operations) {
+                Operation operation = operations.get(index).getOperation();
+                if (operation == Operation.ADD || operation == Operation.REMOVE)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private void copyContainer(Anchor node, JsonParserWrapper source, JsonGeneratorWrapper target) {
+        if (source.currentToken() == JsonTokenWrapper.START_OBJECT)
+            copyObject(node, source, target);
+        else if (source.currentToken() == JsonTokenWrapper.START_ARRAY)
+            copyArray(node, source, target);
+        else
+            target.writeTree(source.readTree());
+    }
+
+    private void copyObject(Anchor node, JsonParserWrapper source, JsonGeneratorWrapper target) {
+        target.writeStartObject();
+        Set<Anchor> seen = new HashSet<Anchor>();
+        List<Member> appended = new ArrayList<Member>();
+        while (source.nextToken() == JsonTokenWrapper.FIELD_NAME) {
+            String name = source.currentName();
+            JsonTokenWrapper token = source.nextToken();
+            Anchor child = node.children.get(name);
+            if (child == null) {
+                target.writeFieldName(name);
+                copyValue(source, target);
+            } else if (child.operations.isEmpty() && streams(child, token)) {
+                seen.add(child);
+                target.writeFieldName(name);
+                copyContainer(child, source, target);
+            } else {
+                seen.add(child);
+                Member member = patchMember(node, child, readOrSkip(child, source), true);
+                if (member.addedAt >= 0) {
+                    appended.add(member);
+                } else if (member.value != null) {
+                    target.writeFieldName(name);
+                    target.writeTree(member.value);
+                }
+            }
+        }
+        for (Anchor child : node.unseen(seen)) {
+            Member member = patchMember(node, child, null, true);
+            if (member.value != null)
+                appended.add(member);
+        }
+        appended.sort((a, b) -> Integer.compare(a.addedAt, b.addedAt));
+        for (Member member : appended) {
+            target.writeFieldName(member.anchor.token.getField());
+            target.writeTree(member.value);
+        }
+        target.writeEndObject();
+    }
+
+    private void copyArray(Anchor node, JsonParserWrapper source, JsonGeneratorWrapper target) {
+        target.writeStartArray();
+        Set<Anchor> seen = new HashSet<Anchor>();
+        int index = 0;
+        JsonTokenWrapper token;
+        while ((token = source.nextToken()) != JsonTokenWrapper.END_ARRAY) {
+            Anchor child = node.children.isEmpty() ? null : node.children.get(Integer.toString(index));
+            if (child == null) {
+                copyValue(source, target);
+            } else if (child.operations.isEmpty() && streams(child, token)) {
+                seen.add(child);
+                copyContainer(child, source, target);
+            } else {
+                seen.add(child);
+                target.writeTree(patchMember(node, child, readOrSkip(child, source), false).value);
+            }
+            index++;
+        }
+        List<Anchor> unseen = node.unseen(seen);
+        if (!unseen.isEmpty())
+            patchMember(node, unseen.get(0), null, false);
+        target.writeEndArray();
+    }
+
+    private static void copyValue(JsonParserWrapper source, JsonGeneratorWrapper target) {
+        JsonTokenWrapper token = source.currentToken();
+        if (token == JsonTokenWrapper.START_OBJECT) {
+            target.writeStartObject();
+            while (source.nextToken() == JsonTokenWrapper.FIELD_NAME) {
+                target.writeFieldName(source.currentName());
+                source.nextToken();
+                copyValue(source, target);
+            }
+            target.writeEndObject();
+        } else if (token == JsonTokenWrapper.START_ARRAY) {
+            target.writeStartArray();
+            while (source.nextToken() != JsonTokenWrapper.END_ARRAY) {
+                copyValue(source, target);
+            }
+            target.writeEndArray();
+        } else {
+            target.writeTree(source.readTree());
+        }
+    }
+
+    // a value the first operation replaces or removes as a whole is never looked at
+    private JsonNodeWrapper readOrSkip(Anchor child, JsonParserWrapper source) {
+        int first = child.collectOperations().get(0);
+        Operation operation = operations.get(first).getOperation();
+        if (child.operations.contains(first) && (operation == Operation.REPLACE || operation == Operation.REMOVE)) {
+            source.skipChildren();
+            return factory.nullNode();
+        }
+        return source.readTree();
+    }
+
+    /**
+     * Applies the operations anchored at and below {@code child} to its value, held as the only member of an
+     * object or the only element of an array so that the operations can add, replace and remove it.
+     *
+     * @param value the value of the member, or {@code null} if there is no such member; in an array every operation
+     *              then fails as addressing an index past the end
+     */
+    private Member patchMember(Anchor parent, Anchor child, JsonNodeWrapper value, boolean inObject) {
+        JsonNodeWrapper holder;
+        RefToken holderToken;
+        if (inObject) {
+            ObjectNodeWrapper object = factory.objectNode();
+            if (value != null)
+                object.set(child.token.getField(), value);
+            holder = object;
+            holderToken = child.token;
+        } else if (value != null) {
+            holder = factory.arrayNode().add(value);
+            holderToken = new RefToken("0", 0, null);
+        } else {
+            holder = factory.arrayNode();
+            holderToken = child.token;
+        }
+        Member member = new Member(child);
+        boolean present = value != null;
+        InPlaceApplyProcessor processor = new InPlaceApplyProcessor(holder, flags);
+        try {
+            for (int index : child.collectOperations()) {
+                apply(operations.get(index), processor, parent.depth, holderToken);
+                boolean nowPresent = !inObject || holder.has(child.token.getField());
+                if (!nowPresent)
+                    member.addedAt = -1;
+                else if (!present)
+                    member.addedAt = index;
+                present = nowPresent;
+            }
+        } finally {
+            processor.flush();
+        }
+        if (present)
+            member.value = inObject ? holder.get(child.token.getField()) : holder.get(0);
+        return member;
+    }
+
+    private void run(List<Integer> indexes, InPlaceApplyProcessor processor) {
+        try {
+            for (int index : indexes) {
+                apply(operations.get(index), processor, 0, null);
+            }
+        } finally {
+            processor.flush();
+        }
+    }
+
+    /**
+     * Applies {@code operation} with its pointers made relative to a holder standing in for the value at depth
+     * {@code depth + 1}, and reports failures at the original pointers. Without a holder the pointers are used as
+     * they are.
+     */
+    private void apply(PatchOperation<?> operation, JsonPatchProcessor processor, int depth, RefToken holderToken) {
+        JsonPointer path = relative(operation.path(), depth, holderToken);
+        JsonPointer from = operation.from() != null ? relative(operation.from(), depth, holderToken) : null;
+        JsonNodeWrapper value = operation.value();
+        try {
+            switch (operation.getOperation()) {
+                case REMOVE:
+                    processor.remove(path);
+                    break;
+                case ADD:
+                    processor.add(path, value.isContainerNode() ? value.deepCopy() : value);
+                    break;
+                case REPLACE:
+                    processor.replace(path, value.isContainerNode() ? value.deepCopy() : value);
+                    break;
+                case MOVE:
+                    processor.move(from, path);
+                    break;
+                case COPY:
+                    processor.copy(from, path);
+                    break;
+                case TEST:
+                    processor.test(path, value);
+                    break;
+            }
+        } catch (JsonPointerEvaluationException e) {
+            throw new JsonPatchApplicationException(e.getMessage(), operation.getOperation(),
+                    holderToken == null ? e.getPath() : original(e.getPath(), operation.path(), depth));
+        } catch (JsonPatchTestFailedException e) {
+            if (holderToken == null)
+                throw e;
+            throw new JsonPatchTestFailedException(e.getMessage(), original(e.getPath(), operation.path(), depth));
+        } catch (JsonPatchApplicationException e) {
+            if (holderToken == null)
+                throw e;
+            throw new JsonPatchApplicationException(e.getMessage(), e.getOperation(), original(e.getPath(), operation.path(), depth));
+        }
+    }
+
+    private static JsonPointer relative(JsonPointer pointer, int depth, RefToken holderToken) {
+        if (holderToken == null)
+            return pointer;
+        RefToken[] tokens = pointer.getTokens();
+        List<RefToken> relative = new ArrayList<RefToken>(tokens.length - depth);
+        relative.add(holderToken);
+        relative.addAll(Arrays.asList(tokens).subList(depth + 1, tokens.length));
+        return new JsonPointer(relative);
+    }
+
+    // the pointer in the document for a pointer relative to the holder of the value operationPath is anchored at
+    private static JsonPointer original(AbstractJsonPointer pointer, JsonPointer operationPath, int depth) {
+        if (pointer == null)
+            return null;
+        RefToken[] tokens = pointer.getTokens();
+        RefToken[] document = operationPath.getTokens();
+        List<RefToken> original = new ArrayList<RefToken>(Arrays.asList(document).subList(0, depth));
+        if (tokens.length > 0) {
+            original.add(document[depth]);
+            original.addAll(Arrays.asList(tokens).subList(1, tokens.length));
+        }
+        return new JsonPointer(original);
+    }
+
+    private static final class Member {
+        private final Anchor anchor;
+        private JsonNodeWrapper value;
+        // the operation that last added the member to its object, if it is there in the end and was not there
+        // before or was removed since
+        private int addedAt = -1;
+
+        private Member(Anchor anchor) {
+            this.anchor = anchor;
+        }
+    }
+
+    /**
+     * A value operations are anchored at or below, by its pointer.
+     */
+    private static final class Anchor {
+        private final RefToken token;
+        private final int depth;
+        private final Map<String, Anchor> children = new LinkedHashMap<String, Anchor>();
+        private final List<Integer> operations = new ArrayList<Integer>();
+        private List<Integer> collected;
+
+        private Anchor(Anchor parent, RefToken token) {
+            this.token = token;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        private Anchor child(RefToken token) {
+            return children.computeIfAbsent(token.getField(), name -> new Anchor(this, token));
+        }
+
+        /**
+         * @return the operations anchored here and below, in patch order
+         */
+        private List<Integer> collectOperations() {
+            if (collected == null) {
+                collected = new ArrayList<Integer>(operations);
+                for (Anchor child : children.values()) {
+                    collected.addAll(child.collectOperations());
+                }
+                Collections.sort(collected);
+            }
+            return collected;
+        }
+
+        /**
+         * @return the children not in {@code seen}, in the order of their first operations
+         */
+        private List<Anchor> unseen(Set<Anchor> seen) {
+            List<Anchor> unseen = new ArrayList<Anchor>();
+            for (Anchor child : children.values()) {
+                if (!seen.contains(child))
+                    unseen.add(child);
+            }
+            unseen.sort((a, b) -> Integer.compare(a.collectOperations().get(0), b.collectOperations().get(0)));
+            return unseen;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonParserWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonTokenWrapper;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Diffs two documents read from token streams in lockstep, handing out operations as soon as they
+ * are known.
+ * <p>
+ * Objects whose fields come in the same order and arrays that are compared by position are walked
+ * token by token, so equal subtrees are never materialized. A value is read into a tree only when it
+ * has to be emitted, when its field appears out of order, or when its array is declared keyed or
+ * unordered in {@link DiffOptions}; such trees are diffed with the regular tree algorithm. Arrays
+ * are otherwise compared position by position, without looking ahead for inserted or removed
+ * elements, and the move and copy passes, which need the whole patch, are not run.
+ */
+final class StreamingDiff {
+
+    private final Supplier<AbstractJsonDiff> treeDiffs;
+    private final EnumSet<DiffFlags> flags;
+    private final DiffOptions options;
+    private final DiffBudget budget;
+    private final Consumer<Diff> out;
+
+    StreamingDiff(Supplier<AbstractJsonDiff> treeDiffs, DiffOptions options, DiffBudget budget, Consumer<Diff> out) {
+        this.treeDiffs = treeDiffs;
+        this.flags = options.getFlags();
+        this.options = options;
+        this.budget = budget;
+        this.out = out;
+    }
+
+    void diff(AbstractJsonPointer root, JsonParserWrapper source, JsonParserWrapper target) {
+        JsonTokenWrapper sourceToken = firstToken(source);
+        JsonTokenWrapper targetToken = firstToken(target);
+        if (sourceToken == null && targetToken != null) {
+            emit(Diff.generateDiff(Operation.ADD, root, target.readTree()));
+        } else if (sourceToken != null && targetToken == null) {
+            emit(Diff.generateDiff(Operation.REMOVE, root, source.readTree()));
+        } else if (sourceToken != null) {
+            diffValues(root, source, target);
+        }
+    }
+
+    private static JsonTokenWrapper firstToken(JsonParserWrapper parser) {
+        return parser.currentToken() != null ? parser.currentToken() : parser.nextToken();
+    }
+
+    private void diffValues(AbstractJsonPointer path, JsonParserWrapper source, JsonParserWrapper target) {
+        budget.checkCancelled();
+        JsonTokenWrapper sourceToken = source.currentToken();
+        JsonTokenWrapper targetToken = target.currentToken();
+        if (sourceToken == JsonTokenWrapper.START_OBJECT && targetToken == JsonTokenWrapper.START_OBJECT) {
+            diffObjects(path, source, target);
+        } else if (sourceToken == JsonTokenWrapper.START_ARRAY && targetToken == JsonTokenWrapper.START_ARRAY) {
+            if (options.identityField(path) != null || options.isUnordered(path))
+                diffTrees(path, source.readTree(), target.readTree());
+            else
+                diffArrays(path, source, target);
+        } else {
+            JsonNodeWrapper sourceValue = source.readTree();
+            JsonNodeWrapper targetValue = target.readTree();
+            if (!sourceValue.equals(targetValue))
+                replace(path, sourceValue, targetValue);
+        }
+    }
+
+    private void diffObjects(AbstractJsonPointer path, JsonParserWrapper source, JsonParserWrapper target) {
+        // fields seen on one side only so far, waiting for their counterpart
+        Map<String, JsonNodeWrapper> pendingSource = new LinkedHashMap<String, JsonNodeWrapper>();
+        Map<String, JsonNodeWrapper> pendingTarget = new LinkedHashMap<String, JsonNodeWrapper>();
+        JsonTokenWrapper sourceToken = source.nextToken();
+        JsonTokenWrapper targetToken = target.nextToken();
+        while (sourceToken == JsonTokenWrapper.FIELD_NAME || targetToken == JsonTokenWrapper.FIELD_NAME) {
+            String sourceName = sourceToken == JsonTokenWrapper.FIELD_NAME ? source.currentName() : null;
+            String targetName = targetToken == JsonTokenWrapper.FIELD_NAME ? target.currentName() : null;
+            if (sourceName != null && sourceName.equals(targetName)) {
+                source.nextToken();
+                target.nextToken();
+                diffValues(path.append(sourceName), source, target);
+                sourceToken = source.nextToken();
+                targetToken = target.nextToken();
+                continue;
+            }
+            if (sourceName != null) {
+                source.nextToken();
+                JsonNodeWrapper value = source.readTree();
+                JsonNodeWrapper counterpart = pendingTarget.remove(sourceName);
+                if (counterpart != null)
+                    diffTrees(path.append(sourceName), value, counterpart);
+                else
+                    pendingSource.put(sourceName, value);
+                sourceToken = source.nextToken();
+            }
+            if (targetName != null) {
+                target.nextToken();
+                JsonNodeWrapper value = target.readTree();
+                JsonNodeWrapper counterpart = pendingSource.remove(targetName);
+                if (counterpart != null)
+                    diffTrees(path.append(targetName), counterpart, value);
+                else
+                    pendingTarget.put(targetName, value);
+                targetToken = target.nextToken();
+            }
+        }
+        for (Map.Entry<String, JsonNodeWrapper> removed : pendingSource.entrySet()) {
+            remove(path.append(removed.getKey()), removed.getValue());
+        }
+        for (Map.Entry<String, JsonNodeWrapper> added : pendingTarget.entrySet()) {
+            emit(Diff.generateDiff(Operation.ADD, path.append(added.getKey()), added.getValue()));
+        }
+    }
+
+    private void diffArrays(AbstractJsonPointer path, JsonParserWrapper source, JsonParserWrapper target) {
+        JsonTokenWrapper sourceToken = source.nextToken();
+        JsonTokenWrapper targetToken = target.nextToken();
+        int pos = 0;
+        while (sourceToken != JsonTokenWrapper.END_ARRAY && targetToken != JsonTokenWrapper.END_ARRAY) {
+            diffValues(path.append(pos), source, target);
+            sourceToken = source.nextToken();
+            targetToken = target.nextToken();
+            pos++;
+        }
+        while (targetToken != JsonTokenWrapper.END_ARRAY) {
+            emit(Diff.generateDiff(Operation.ADD, path.append(pos), target.readTree()));
+            targetToken = target.nextToken();
+            pos++;
+        }
+        // every removal shifts the next element into the same position
+        AbstractJsonPointer removedPath = path.append(pos);
+        while (sourceToken != JsonTokenWrapper.END_ARRAY) {
+            if (keepsRemovedValues()) {
+                remove(removedPath, source.readTree());
+            } else {
+                source.skipChildren();
+                emit(Diff.generateDiff(Operation.REMOVE, removedPath, null));
+            }
+            sourceToken = source.nextToken();
+        }
+    }
+
+    private void diffTrees(AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+        // a fresh differ per subtree, so that its fingerprints are released with it
+        for (Diff diff : treeDiffs.get().diffSubtree(path, source, target)) {
+            emit(diff);
+        }
+    }
+
+    private void replace(AbstractJsonPointer path, JsonNodeWrapper source, JsonNodeWrapper target) {
+        if (flags.contains(DiffFlags.EMIT_TEST_OPERATIONS))
+            emit(new Diff(Operation.TEST, path, source));
+        emit(Diff.generateDiff(Operation.REPLACE, path, source, target));
+    }
+
+    private void remove(AbstractJsonPointer path, JsonNodeWrapper value) {
+        if (flags.contains(DiffFlags.EMIT_TEST_OPERATIONS))
+            emit(new Diff(Operation.TEST, path, value));
+        emit(Diff.generateDiff(Operation.REMOVE, path, value));
+    }
+
+    // removed values end up in the patch only through these flags, otherwise they need not be read
+    private boolean keepsRemovedValues() {
+        return flags.contains(DiffFlags.EMIT_TEST_OPERATIONS) || !flags.contains(DiffFlags.OMIT_VALUE_ON_REMOVE);
+    }
+
+    private void emit(Diff diff) {
+        if (diff.getOperation() == Operation.REPLACE && diff.getSrcValue() != null
+                && flags.contains(DiffFlags.ADD_EXPLICIT_REMOVE_ADD_ON_REPLACE)) {
+            out.accept(new Diff(Operation.REMOVE, diff.getPath(), diff.getSrcValue()));
+            out.accept(new Diff(Operation.ADD, diff.getPath(), diff.getValue()));
+        } else {
+            out.accept(diff);
+        }
+    }
+}
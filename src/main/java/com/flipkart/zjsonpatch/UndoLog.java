@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.flipkart.zjsonpatch.mapping.ArrayNodeWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+import com.flipkart.zjsonpatch.mapping.ObjectNodeWrapper;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The inverse of every change {@link InPlaceApplyProcessor} made to a document, for putting it back the way it
+ * was, member order included, when a later operation of the patch fails.
+ */
+class UndoLog {
+
+    private final List<Runnable> undos = new ArrayList<Runnable>();
+
+    /**
+     * @param previous the value {@code field} held before, {@code null} if the field was added
+     */
+    void objectSet(ObjectNodeWrapper object, String field, JsonNodeWrapper previous) {
+        if (previous == null)
+            undos.add(() -> object.remove(field));
+        else
+            undos.add(() -> object.set(field, previous));   // an existing field keeps its position
+    }
+
+    /**
+     * Must be called before {@code field} is removed, so that its position can be restored.
+     */
+    void objectRemoving(ObjectNodeWrapper object, String field, JsonNodeWrapper removed) {
+        String successor = null;
+        Iterator<String> fieldNames = object.fieldNames();
+        while (fieldNames.hasNext()) {
+            if (fieldNames.next().equals(field)) {
+                successor = fieldNames.hasNext() ? fieldNames.next() : null;
+                break;
+            }
+        }
+        String following = successor;
+        undos.add(() -> {
+            object.set(field, removed);
+            if (following != null)
+                moveToEnd(object, following, field);
+        });
+    }
+
+    // re-adds the fields from {@code from} on, so that they come after {@code field} again
+    private static void moveToEnd(ObjectNodeWrapper object, String from, String field) {
+        List<String> names = new ArrayList<String>();
+        Iterator<String> fieldNames = object.fieldNames();
+        boolean found = false;
+        while (fieldNames.hasNext()) {
+            String name = fieldNames.next();
+            found |= name.equals(from);
+            if (found && !name.equals(field))
+                names.add(name);
+        }
+        for (String name : names) {
+            object.set(name, object.remove(name));
+        }
+    }
+
+    void arraySet(ArrayNodeWrapper array, int index, JsonNodeWrapper previous) {
+        undos.add(() -> array.set(index, previous));
+    }
+
+    void arrayInserted(ArrayNodeWrapper array, int index) {
+        undos.add(() -> array.remove(index));
+    }
+
+    void arrayRemoved(ArrayNodeWrapper array, int index, JsonNodeWrapper removed) {
+        undos.add(() -> array.insert(index, removed));
+    }
+
+    void arrayReplaced(ArrayNodeWrapper array, List<JsonNodeWrapper> previous) {
+        undos.add(() -> {
+            array.removeAll();
+            for (JsonNodeWrapper element : previous) {
+                array.add(element);
+            }
+        });
+    }
+
+    /**
+     * Undoes the recorded changes, latest first.
+     */
+    void rollback() {
+        for (int i = undos.size() - 1; i >= 0; i--) {
+            undos.get(i).run();
+        }
+        undos.clear();
+    }
+}
@@ -28,4 +28,5 @@ public interface ArrayNodeWrapper extends JsonNodeWrapper {
     ArrayNodeWrapper add(JsonNodeWrapper value);
     ArrayNodeWrapper insert(int index, JsonNodeWrapper value);
     JsonNodeWrapper remove(int index);
+    ArrayNodeWrapper removeAll();
 }
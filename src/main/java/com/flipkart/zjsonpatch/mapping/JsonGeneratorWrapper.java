@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.zjsonpatch.mapping;
+
+/**
+ * Minimal view of a JSON generator, used to write patches without building them as trees first.
+ *
+ * @since 0.6.3
+ */
+public interface JsonGeneratorWrapper {
+
+    void writeStartArray();
+
+    void writeEndArray();
+
+    void writeStartObject();
+
+    void writeEndObject();
+
+    void writeFieldName(String name);
+
+    void writeString(String text);
+
+    /**
+     * Writes {@code length} characters of {@code buffer} starting at {@code offset} as a string value.
+     */
+    void writeString(char[] buffer, int offset, int length);
+
+    void writeTree(JsonNodeWrapper node);
+
+    void flush();
+}
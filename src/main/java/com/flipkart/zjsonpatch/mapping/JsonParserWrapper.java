@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.zjsonpatch.mapping;
+
+/**
+ * Forward-only view of a JSON token stream, used to diff documents without reading them into trees.
+ * <p>
+ * Scalars and the start of containers are reported with the same tokens as {@link JsonNodeWrapper#asToken()};
+ * inside containers the stream also yields {@link JsonTokenWrapper#FIELD_NAME},
+ * {@link JsonTokenWrapper#END_OBJECT} and {@link JsonTokenWrapper#END_ARRAY}.
+ *
+ * @since 0.6.3
+ */
+public interface JsonParserWrapper {
+
+    /**
+     * Advances to the next token.
+     *
+     * @return the new current token, or {@code null} at the end of the input
+     */
+    JsonTokenWrapper nextToken();
+
+    /**
+     * @return the current token, or {@code null} before the first and after the last token
+     */
+    JsonTokenWrapper currentToken();
+
+    /**
+     * @return the field name if the current token is {@link JsonTokenWrapper#FIELD_NAME}
+     */
+    String currentName();
+
+    /**
+     * Reads the value starting at the current token into a tree, leaving the parser on the last
+     * token of that value.
+     */
+    JsonNodeWrapper readTree();
+
+    /**
+     * Skips the container starting at the current token, leaving the parser on its end token.
+     * Does nothing if the current token is a scalar.
+     */
+    void skipChildren();
+}
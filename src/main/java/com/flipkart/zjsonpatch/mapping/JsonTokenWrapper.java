@@ -29,5 +29,8 @@ public enum JsonTokenWrapper {
     VALUE_NUMBER_FLOAT,
     VALUE_TRUE,
     VALUE_FALSE,
-    VALUE_NULL
+    VALUE_NULL,
+    FIELD_NAME,
+    END_OBJECT,
+    END_ARRAY
 }
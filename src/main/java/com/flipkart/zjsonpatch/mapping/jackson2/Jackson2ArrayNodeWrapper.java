@@ -62,6 +62,12 @@ public class Jackson2ArrayNodeWrapper extends Jackson2NodeWrapper implements Arr
     public JsonNodeWrapper remove(int index) {
         return new Jackson2NodeWrapper(arrayNode.remove(index));
     }
+
+    @Override
+    public ArrayNodeWrapper removeAll() {
+        arrayNode.removeAll();
+        return this;
+    }
     
 
     @Override
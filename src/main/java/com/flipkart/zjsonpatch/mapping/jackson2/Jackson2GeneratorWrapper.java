@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.zjsonpatch.mapping.jackson2;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flipkart.zjsonpatch.mapping.JsonGeneratorWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Wraps a Jackson 2.x {@link JsonGenerator}. Trees are written with the generator's codec, or with a
+ * default {@link ObjectMapper} if the generator was created without one. I/O errors are rethrown as
+ * {@link UncheckedIOException}.
+ *
+ * @since 0.6.3
+ */
+public class Jackson2GeneratorWrapper implements JsonGeneratorWrapper {
+
+    private static final ObjectMapper DEFAULT_CODEC = new ObjectMapper();
+
+    private final JsonGenerator generator;
+
+    public Jackson2GeneratorWrapper(JsonGenerator generator) {
+        this.generator = generator;
+    }
+
+    @Override
+    public void writeStartArray() {
+        try {
+            generator.writeStartArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeEndArray() {
+        try {
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeStartObject() {
+        try {
+            generator.writeStartObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeEndObject() {
+        try {
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeFieldName(String name) {
+        try {
+            generator.writeFieldName(name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeString(String text) {
+        try {
+            generator.writeString(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeString(char[] buffer, int offset, int length) {
+        try {
+            generator.writeString(buffer, offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeTree(JsonNodeWrapper node) {
+        try {
+            TreeNode tree = (TreeNode) node.getUnderlyingNode();
+            if (generator.getCodec() != null)
+                generator.writeTree(tree);
+            else
+                DEFAULT_CODEC.writeTree(generator, tree);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.zjsonpatch.mapping.jackson2;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonParserWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonTokenWrapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Wraps a Jackson 2.x {@link JsonParser}. Trees are read with the parser's codec, or with a default
+ * {@link ObjectMapper} if the parser was created without one. I/O errors are rethrown as
+ * {@link UncheckedIOException}.
+ *
+ * @since 0.6.3
+ */
+public class Jackson2ParserWrapper implements JsonParserWrapper {
+
+    private static final ObjectMapper DEFAULT_CODEC = new ObjectMapper();
+
+    private final JsonParser parser;
+    private final ObjectCodec codec;
+
+    public Jackson2ParserWrapper(JsonParser parser) {
+        this.parser = parser;
+        this.codec = parser.getCodec() != null ? parser.getCodec() : DEFAULT_CODEC;
+    }
+
+    @Override
+    public JsonTokenWrapper nextToken() {
+        try {
+            return mapToken(parser.nextToken());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public JsonTokenWrapper currentToken() {
+        return mapToken(parser.currentToken());
+    }
+
+    @Override
+    public String currentName() {
+        try {
+            return parser.currentName();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public JsonNodeWrapper readTree() {
+        try {
+            JsonNode tree = codec.readTree(parser);
+            return new Jackson2NodeWrapper(tree);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void skipChildren() {
+        try {
+            parser.skipChildren();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static JsonTokenWrapper mapToken(JsonToken token) {
+        if (token == null) return null;
+        return switch (token) {
+            case START_OBJECT -> JsonTokenWrapper.START_OBJECT;
+            case END_OBJECT -> JsonTokenWrapper.END_OBJECT;
+            case START_ARRAY -> JsonTokenWrapper.START_ARRAY;
+            case END_ARRAY -> JsonTokenWrapper.END_ARRAY;
+            case FIELD_NAME -> JsonTokenWrapper.FIELD_NAME;
+            case VALUE_STRING -> JsonTokenWrapper.VALUE_STRING;
+            case VALUE_NUMBER_INT -> JsonTokenWrapper.VALUE_NUMBER_INT;
+            case VALUE_NUMBER_FLOAT -> JsonTokenWrapper.VALUE_NUMBER_FLOAT;
+            case VALUE_TRUE -> JsonTokenWrapper.VALUE_TRUE;
+            case VALUE_FALSE -> JsonTokenWrapper.VALUE_FALSE;
+            case VALUE_NULL -> JsonTokenWrapper.VALUE_NULL;
+            default -> throw new IllegalStateException("Unsupported token: " + token);
+        };
+    }
+}
@@ -29,6 +29,8 @@
  *   <li>{@link com.flipkart.zjsonpatch.mapping.jackson2.Jackson2ArrayNodeWrapper} - Wraps Jackson 2.x ArrayNode</li>
  *   <li>{@link com.flipkart.zjsonpatch.mapping.jackson2.Jackson2ObjectNodeWrapper} - Wraps Jackson 2.x ObjectNode</li>
  *   <li>{@link com.flipkart.zjsonpatch.mapping.jackson2.Jackson2NodeFactory} - Wraps Jackson 2.x JsonNodeFactory</li>
+ *   <li>{@link com.flipkart.zjsonpatch.mapping.jackson2.Jackson2ParserWrapper} - Wraps Jackson 2.x JsonParser</li>
+ *   <li>{@link com.flipkart.zjsonpatch.mapping.jackson2.Jackson2GeneratorWrapper} - Wraps Jackson 2.x JsonGenerator</li>
  * </ul>
  * 
  * <h2>Dependencies</h2>
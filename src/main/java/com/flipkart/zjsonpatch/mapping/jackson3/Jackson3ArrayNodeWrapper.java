@@ -62,6 +62,12 @@ public class Jackson3ArrayNodeWrapper extends Jackson3NodeWrapper implements Arr
     public JsonNodeWrapper remove(int index) {
         return new Jackson3NodeWrapper(arrayNode.remove(index));
     }
+
+    @Override
+    public ArrayNodeWrapper removeAll() {
+        arrayNode.removeAll();
+        return this;
+    }
     
 
     @Override
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.zjsonpatch.mapping.jackson3;
+
+import com.flipkart.zjsonpatch.mapping.JsonGeneratorWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.ObjectWriteContext;
+import tools.jackson.core.TreeNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Wraps a Jackson 3.x {@link JsonGenerator}. Trees are written through the generator's write context,
+ * or with a default {@link JsonMapper} if the generator was created without one.
+ *
+ * @since 0.6.3
+ */
+public class Jackson3GeneratorWrapper implements JsonGeneratorWrapper {
+
+    private static final ObjectMapper DEFAULT_MAPPER = new JsonMapper();
+
+    private final JsonGenerator generator;
+    private final boolean hasWriteContext;
+
+    public Jackson3GeneratorWrapper(JsonGenerator generator) {
+        this.generator = generator;
+        this.hasWriteContext = generator.objectWriteContext() != ObjectWriteContext.empty();
+    }
+
+    @Override
+    public void writeStartArray() {
+        generator.writeStartArray();
+    }
+
+    @Override
+    public void writeEndArray() {
+        generator.writeEndArray();
+    }
+
+    @Override
+    public void writeStartObject() {
+        generator.writeStartObject();
+    }
+
+    @Override
+    public void writeEndObject() {
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void writeFieldName(String name) {
+        generator.writeName(name);
+    }
+
+    @Override
+    public void writeString(String text) {
+        generator.writeString(text);
+    }
+
+    @Override
+    public void writeString(char[] buffer, int offset, int length) {
+        generator.writeString(buffer, offset, length);
+    }
+
+    @Override
+    public void writeTree(JsonNodeWrapper node) {
+        TreeNode tree = (TreeNode) node.getUnderlyingNode();
+        if (hasWriteContext)
+            generator.writeTree(tree);
+        else
+            DEFAULT_MAPPER.writeTree(generator, tree);
+    }
+
+    @Override
+    public void flush() {
+        generator.flush();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.zjsonpatch.mapping.jackson3;
+
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonParserWrapper;
+import com.flipkart.zjsonpatch.mapping.JsonTokenWrapper;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.core.ObjectReadContext;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Wraps a Jackson 3.x {@link JsonParser}. Trees are read through the parser's read context, or with
+ * a default {@link JsonMapper} if the parser was created without one.
+ *
+ * @since 0.6.3
+ */
+public class Jackson3ParserWrapper implements JsonParserWrapper {
+
+    private static final ObjectMapper DEFAULT_MAPPER = new JsonMapper();
+
+    private final JsonParser parser;
+    private final boolean hasReadContext;
+
+    public Jackson3ParserWrapper(JsonParser parser) {
+        this.parser = parser;
+        this.hasReadContext = parser.objectReadContext() != ObjectReadContext.empty();
+    }
+
+    @Override
+    public JsonTokenWrapper nextToken() {
+        return mapToken(parser.nextToken());
+    }
+
+    @Override
+    public JsonTokenWrapper currentToken() {
+        return mapToken(parser.currentToken());
+    }
+
+    @Override
+    public String currentName() {
+        return parser.currentName();
+    }
+
+    @Override
+    public JsonNodeWrapper readTree() {
+        JsonNode tree = hasReadContext ? parser.readValueAsTree() : DEFAULT_MAPPER.readTree(parser);
+        return new Jackson3NodeWrapper(tree);
+    }
+
+    @Override
+    public void skipChildren() {
+        parser.skipChildren();
+    }
+
+    private static JsonTokenWrapper mapToken(JsonToken token) {
+        if (token == null) return null;
+        return switch (token) {
+            case START_OBJECT -> JsonTokenWrapper.START_OBJECT;
+            case END_OBJECT -> JsonTokenWrapper.END_OBJECT;
+            case START_ARRAY -> JsonTokenWrapper.START_ARRAY;
+            case END_ARRAY -> JsonTokenWrapper.END_ARRAY;
+            case PROPERTY_NAME -> JsonTokenWrapper.FIELD_NAME;
+            case VALUE_STRING -> JsonTokenWrapper.VALUE_STRING;
+            case VALUE_NUMBER_INT -> JsonTokenWrapper.VALUE_NUMBER_INT;
+            case VALUE_NUMBER_FLOAT -> JsonTokenWrapper.VALUE_NUMBER_FLOAT;
+            case VALUE_TRUE -> JsonTokenWrapper.VALUE_TRUE;
+            case VALUE_FALSE -> JsonTokenWrapper.VALUE_FALSE;
+            case VALUE_NULL -> JsonTokenWrapper.VALUE_NULL;
+            default -> throw new IllegalStateException("Unsupported token: " + token);
+        };
+    }
+}
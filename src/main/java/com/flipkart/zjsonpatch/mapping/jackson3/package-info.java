@@ -29,6 +29,8 @@
  *   <li>{@link com.flipkart.zjsonpatch.mapping.jackson3.Jackson3ArrayNodeWrapper} - Wraps Jackson 3.x ArrayNode</li>
  *   <li>{@link com.flipkart.zjsonpatch.mapping.jackson3.Jackson3ObjectNodeWrapper} - Wraps Jackson 3.x ObjectNode</li>
  *   <li>{@link com.flipkart.zjsonpatch.mapping.jackson3.Jackson3NodeFactory} - Wraps Jackson 3.x JsonNodeFactory</li>
+ *   <li>{@link com.flipkart.zjsonpatch.mapping.jackson3.Jackson3ParserWrapper} - Wraps Jackson 3.x JsonParser</li>
+ *   <li>{@link com.flipkart.zjsonpatch.mapping.jackson3.Jackson3GeneratorWrapper} - Wraps Jackson 3.x JsonGenerator</li>
  * </ul>
  * 
  * <h2>Dependencies</h2>
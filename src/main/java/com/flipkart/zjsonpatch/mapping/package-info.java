@@ -40,6 +40,8 @@
  *   <li>{@link com.flipkart.zjsonpatch.mapping.ArrayNodeWrapper} - Wrapper for JSON array operations</li>
  *   <li>{@link com.flipkart.zjsonpatch.mapping.ObjectNodeWrapper} - Wrapper for JSON object operations</li>
  *   <li>{@link com.flipkart.zjsonpatch.mapping.JsonNodeFactoryWrapper} - Wrapper for JSON node factory operations</li>
+ *   <li>{@link com.flipkart.zjsonpatch.mapping.JsonParserWrapper} - Wrapper for reading a JSON token stream</li>
+ *   <li>{@link com.flipkart.zjsonpatch.mapping.JsonGeneratorWrapper} - Wrapper for writing a JSON token stream</li>
  * </ul>
  * 
  * <h2>Version Management</h2>
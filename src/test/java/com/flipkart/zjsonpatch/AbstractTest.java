@@ -16,6 +16,8 @@
 
 package com.flipkart.zjsonpatch;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -25,6 +27,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameter;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 
@@ -44,25 +47,74 @@ public abstract class AbstractTest {
         return true;
     }
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private enum ApplyMode { COPYING, IN_PLACE, COMPILED, SHARING, ATOMIC, PARSED, STREAMING }
+
     @Test
     public void testApply() throws Exception {
         if (p.isOperation()) {
-            testOperation(false);
+            testOperation(ApplyMode.COPYING);
         } else {
-            testError(false);
+            testError(ApplyMode.COPYING);
         }
     }
 
     @Test
     public void testApplyInPlace() throws Exception {
         if (p.isOperation() && p.isApplyInPlaceSupported()) {
-            testOperation(true);
+            testOperation(ApplyMode.IN_PLACE);
+        } else {
+            testError(ApplyMode.IN_PLACE);
+        }
+    }
+
+    @Test
+    public void testApplyCompiled() throws Exception {
+        if (p.isOperation()) {
+            testOperation(ApplyMode.COMPILED);
+        } else {
+            testError(ApplyMode.COMPILED);
+        }
+    }
+
+    @Test
+    public void testApplyWithSharing() throws Exception {
+        if (p.isOperation()) {
+            testOperation(ApplyMode.SHARING);
+        } else {
+            testError(ApplyMode.SHARING);
+        }
+    }
+
+    @Test
+    public void testApplyInPlaceAtomic() throws Exception {
+        if (p.isOperation() && p.isApplyInPlaceSupported()) {
+            testOperation(ApplyMode.ATOMIC);
+        } else {
+            testError(ApplyMode.ATOMIC);
+        }
+    }
+
+    @Test
+    public void testApplyParsed() throws Exception {
+        if (p.isOperation()) {
+            testOperation(ApplyMode.PARSED);
         } else {
-            testError(true);
+            testError(ApplyMode.PARSED);
         }
     }
 
-    private void testOperation(boolean inPlace) {
+    @Test
+    public void testApplyStreaming() throws Exception {
+        if (p.isOperation()) {
+            testOperation(ApplyMode.STREAMING);
+        } else {
+            testError(ApplyMode.STREAMING);
+        }
+    }
+
+    private void testOperation(ApplyMode mode) throws IOException {
         JsonNode node = p.getNode();
 
         JsonNode doc = node.get("node");
@@ -71,9 +123,22 @@ public abstract class AbstractTest {
         String message = node.has("message") ? node.get("message").toString() : "";
 
         JsonNode result;
-        if (inPlace) {
+        if (mode == ApplyMode.IN_PLACE) {
             result = doc.deepCopy();
             JsonPatch.applyInPlace(patch, result);
+        } else if (mode == ApplyMode.COMPILED) {
+            result = JsonPatch.compile(patch).apply(doc);
+        } else if (mode == ApplyMode.ATOMIC) {
+            result = doc.deepCopy();
+            JsonPatch.applyInPlaceAtomic(patch, result);
+        } else if (mode == ApplyMode.SHARING) {
+            JsonNode original = doc.deepCopy();
+            result = JsonPatch.applyWithSharing(patch, doc);
+            assertEquals("source changed", original, doc);
+        } else if (mode == ApplyMode.PARSED) {
+            result = JsonPatch.apply(MAPPER.createParser(patch.toString()), doc);
+        } else if (mode == ApplyMode.STREAMING) {
+            result = applyStreaming(patch, doc);
         } else {
             result = JsonPatch.apply(patch, doc);
         }
@@ -83,6 +148,15 @@ public abstract class AbstractTest {
         assertEquals(failMessage, expected, result);
     }
 
+    private static JsonNode applyStreaming(JsonNode patch, JsonNode source) throws IOException {
+        StringWriter output = new StringWriter();
+        try (JsonParser parser = MAPPER.createParser(source.toString());
+             JsonGenerator generator = MAPPER.createGenerator(output)) {
+            JsonPatch.applyStreaming(JsonPatch.compile(patch), parser, generator);
+        }
+        return MAPPER.readTree(output.toString());
+    }
+
     private Class<?> exceptionType(String type) throws ClassNotFoundException {
         return Class.forName(type.contains(".") ? type : "com.flipkart.zjsonpatch." + type);
     }
@@ -105,7 +179,7 @@ public abstract class AbstractTest {
         return res.toString();
     }
 
-    private void testError(boolean inPlace) throws JsonProcessingException, ClassNotFoundException {
+    private void testError(ApplyMode mode) throws IOException, ClassNotFoundException {
         JsonNode node = p.getNode();
         JsonNode first = node.get("node");
         JsonNode patch = node.get("op");
@@ -114,9 +188,24 @@ public abstract class AbstractTest {
                 node.has("type") ? exceptionType(node.get("type").textValue()) : JsonPatchApplicationException.class;
 
         try {
-            if (inPlace) {
+            if (mode == ApplyMode.IN_PLACE) {
                 JsonNode target = first.deepCopy();
                 JsonPatch.applyInPlace(patch, target);
+            } else if (mode == ApplyMode.COMPILED) {
+                JsonPatch.compile(patch).apply(first);
+            } else if (mode == ApplyMode.SHARING) {
+                JsonPatch.applyWithSharing(patch, first);
+            } else if (mode == ApplyMode.ATOMIC) {
+                JsonNode target = first.deepCopy();
+                try {
+                    JsonPatch.applyInPlaceAtomic(patch, target);
+                } finally {
+                    assertEquals("document not rolled back", first.toString(), target.toString());
+                }
+            } else if (mode == ApplyMode.PARSED) {
+                JsonPatch.apply(MAPPER.createParser(patch.toString()), first);
+            } else if (mode == ApplyMode.STREAMING) {
+                applyStreaming(patch, first);
             } else {
                 JsonPatch.apply(patch, first);
             }
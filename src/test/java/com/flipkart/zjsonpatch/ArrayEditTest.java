@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ArrayEditTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testRunOfRemovalsAtOneIndex() {
+        JsonNode source = document(200);
+        ArrayNode patch = MAPPER.createArrayNode();
+        for (int i = 0; i < 150; i++) {
+            patch.addObject().put("op", "remove").put("path", "/list/20");
+        }
+
+        JsonNode result = JsonPatch.apply(patch, source);
+
+        assertEquals(50, result.get("list").size());
+        assertEquals(19, result.get("list").get(19).get("v").intValue());
+        assertEquals(170, result.get("list").get(20).get("v").intValue());
+    }
+
+    @Test
+    public void testRunOfAdditionsAndReplacements() {
+        JsonNode source = document(100);
+        ArrayNode patch = MAPPER.createArrayNode();
+        for (int i = 0; i < 50; i++) {
+            patch.addObject().put("op", "add").put("path", "/list/" + (10 + i)).putObject("value").put("v", -i);
+        }
+        patch.addObject().put("op", "replace").put("path", "/list/0").put("value", "first");
+        patch.addObject().put("op", "add").put("path", "/list/-").put("value", "last");
+
+        JsonNode result = JsonPatch.apply(patch, source);
+
+        assertEquals(operationByOperation(patch, source), result);
+        assertEquals(151, result.get("list").size());
+        assertEquals("first", result.get("list").get(0).textValue());
+        assertEquals(-49, result.get("list").get(59).get("v").intValue());
+        assertEquals(10, result.get("list").get(60).get("v").intValue());
+        assertEquals("last", result.get("list").get(150).textValue());
+    }
+
+    @Test
+    public void testFailureWithinRunKeepsEarlierChangesInPlace() {
+        JsonNode document = document(100);
+        ArrayNode patch = MAPPER.createArrayNode();
+        patch.addObject().put("op", "remove").put("path", "/list/0");
+        patch.addObject().put("op", "remove").put("path", "/list/0");
+        patch.addObject().put("op", "replace").put("path", "/list/98").put("value", 0);
+
+        try {
+            JsonPatch.applyInPlace(patch, document);
+            fail("expected out of bounds replace to fail");
+        } catch (JsonPatchApplicationException e) {
+            assertEquals("Array index 98 out of bounds", e.getMessage());
+        }
+        assertEquals(98, document.get("list").size());
+        assertEquals(2, document.get("list").get(0).get("v").intValue());
+    }
+
+    @Test
+    public void testFailureWithinRunIsRolledBack() {
+        JsonNode document = document(100);
+        JsonNode original = document.deepCopy();
+        ArrayNode patch = MAPPER.createArrayNode();
+        patch.addObject().put("op", "remove").put("path", "/list/3");
+        patch.addObject().put("op", "add").put("path", "/list/3").put("value", 1);
+        patch.addObject().put("op", "add").put("path", "/list/200").put("value", 2);
+
+        try {
+            JsonPatch.applyInPlaceAtomic(patch, document);
+            fail("expected out of bounds add to fail");
+        } catch (JsonPatchApplicationException e) {
+            assertEquals(original.toString(), document.toString());
+        }
+    }
+
+    @Test
+    public void testElementReadWithinRunSeesEarlierChanges() {
+        JsonNode source = document(100);
+        ArrayNode patch = MAPPER.createArrayNode();
+        patch.addObject().put("op", "remove").put("path", "/list/0");
+        patch.addObject().put("op", "add").put("path", "/list/1").put("value", "x");
+        patch.addObject().put("op", "replace").put("path", "/list/2/v").put("value", -1);
+        patch.addObject().put("op", "remove").put("path", "/list/3");
+        patch.addObject().put("op", "test").put("path", "/list/1").put("value", "x");
+
+        assertAllModes(patch, source);
+        assertEquals(-1, JsonPatch.apply(patch, source).get("list").get(2).get("v").intValue());
+    }
+
+    @Test
+    public void testMoveAndCopyWithinEditedArray() {
+        JsonNode source = document(100);
+        ArrayNode patch = MAPPER.createArrayNode();
+        patch.addObject().put("op", "remove").put("path", "/list/0");
+        patch.addObject().put("op", "move").put("from", "/list/5").put("path", "/list/50");
+        patch.addObject().put("op", "copy").put("from", "/list/50").put("path", "/list/1");
+        patch.addObject().put("op", "add").put("path", "/list/1/w").put("value", true);
+        patch.addObject().put("op", "copy").put("from", "/list/-").put("path", "/other");
+
+        try {
+            JsonPatch.apply(patch, source);
+            fail("expected copy from \"-\" to fail");
+        } catch (JsonPatchApplicationException e) {
+            // reading "-" fails whether or not edits are held back
+        }
+        patch.remove(patch.size() - 1);
+        assertAllModes(patch, source);
+        JsonNode result = JsonPatch.apply(patch, source);
+        assertEquals(6, result.get("list").get(1).get("v").intValue());
+        assertEquals(6, result.get("list").get(51).get("v").intValue());
+        assertEquals(false, result.get("list").get(51).has("w"));
+    }
+
+    private static void assertAllModes(ArrayNode patch, JsonNode source) {
+        JsonNode expected = operationByOperation(patch, source);
+        assertEquals(expected, JsonPatch.apply(patch, source));
+        assertEquals(expected, JsonPatch.applyWithSharing(patch, source));
+        assertEquals(expected, JsonPatch.compile(patch).apply(source));
+        JsonNode document = source.deepCopy();
+        JsonPatch.applyInPlace(patch, document);
+        assertEquals(expected, document);
+    }
+
+    private static JsonNode operationByOperation(ArrayNode patch, JsonNode source) {
+        JsonNode result = source;
+        for (JsonNode operation : patch) {
+            result = JsonPatch.apply(MAPPER.createArrayNode().add(operation), result);
+        }
+        return result;
+    }
+
+    private static JsonNode document(int size) {
+        ObjectNode document = MAPPER.createObjectNode();
+        ArrayNode list = document.putArray("list");
+        for (int i = 0; i < size; i++) {
+            list.addObject().put("v", i);
+        }
+        document.put("other", 0);
+        return document;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class AtomicApplyTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testFailedTestRollsBackEarlierOperations() throws IOException {
+        JsonNode document = MAPPER.readTree("{\"a\":1,\"b\":{\"c\":[1,2,3]},\"d\":\"x\",\"e\":null}");
+        String original = document.toString();
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"remove\",\"path\":\"/a\"}," +
+                "{\"op\":\"add\",\"path\":\"/b/c/1\",\"value\":9}," +
+                "{\"op\":\"replace\",\"path\":\"/d\",\"value\":\"y\"}," +
+                "{\"op\":\"move\",\"from\":\"/b/c/0\",\"path\":\"/f\"}," +
+                "{\"op\":\"copy\",\"from\":\"/b\",\"path\":\"/e\"}," +
+                "{\"op\":\"remove\",\"path\":\"/b/c/-\"}," +
+                "{\"op\":\"test\",\"path\":\"/d\",\"value\":\"x\"}]");
+
+        try {
+            JsonPatch.applyInPlaceAtomic(patch, document);
+            fail("Failure expected");
+        } catch (JsonPatchTestFailedException e) {
+            assertEquals(original, document.toString());
+        }
+    }
+
+    @Test
+    public void testInvalidOperationRollsBackEarlierOperations() throws IOException {
+        JsonNode document = MAPPER.readTree("{\"a\":{\"b\":1,\"c\":2,\"d\":3}}");
+        String original = document.toString();
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"remove\",\"path\":\"/a/b\"},{\"op\":\"add\",\"path\":\"/a/b\"}]");
+
+        try {
+            JsonPatch.applyInPlaceAtomic(patch, document);
+            fail("Failure expected");
+        } catch (InvalidJsonPatchException e) {
+            assertEquals(original, document.toString());
+        }
+    }
+
+    @Test
+    public void testReplaceOfLastIndexRollsBackEarlierOperations() throws IOException {
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/y\",\"value\":2}," +
+                "{\"op\":\"replace\",\"path\":\"/x/-\",\"value\":2}]");
+        for (boolean compiled : new boolean[]{false, true}) {
+            JsonNode document = MAPPER.readTree("{\"x\":[1],\"y\":1}");
+            try {
+                if (compiled)
+                    JsonPatch.compile(patch).applyInPlaceAtomic(document);
+                else
+                    JsonPatch.applyInPlaceAtomic(patch, document);
+                fail("Failure expected");
+            } catch (JsonPatchApplicationException e) {
+                assertEquals("Array index - out of bounds", e.getMessage());
+                assertEquals("{\"x\":[1],\"y\":1}", document.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testCompiledPatchRollsBack() throws IOException {
+        CompiledPatch<JsonNode> patch = JsonPatch.compile(MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/x\",\"value\":1}," +
+                "{\"op\":\"remove\",\"path\":\"/items/0\"},{\"op\":\"replace\",\"path\":\"/missing\",\"value\":0}]"),
+                CompatibilityFlags.defaults());
+        JsonNode document = MAPPER.readTree("{\"items\":[1,2]}");
+
+        try {
+            patch.applyInPlaceAtomic(document);
+            fail("Failure expected");
+        } catch (JsonPatchApplicationException e) {
+            assertEquals("{\"items\":[1,2]}", document.toString());
+        }
+    }
+
+    @Test
+    public void testRemovedMembersAreRestoredInPlace() throws IOException {
+        JsonNode document = MAPPER.readTree("{\"a\":1,\"b\":{\"x\":1},\"c\":3}");
+        String original = document.toString();
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"remove\",\"path\":\"/a\"}," +
+                "{\"op\":\"move\",\"from\":\"/b\",\"path\":\"/a\"}," +
+                "{\"op\":\"add\",\"path\":\"/b\",\"value\":2}," +
+                "{\"op\":\"test\",\"path\":\"/c\",\"value\":4}]");
+
+        try {
+            JsonPatch.applyInPlaceAtomic(patch, document);
+            fail("Failure expected");
+        } catch (JsonPatchTestFailedException e) {
+            assertEquals(original, document.toString());
+        }
+    }
+
+    @Test
+    public void testHeldBackArrayEditsAreRolledBack() throws IOException {
+        ArrayNode items = MAPPER.createArrayNode();
+        for (int i = 0; i < 100; i++) {
+            items.add(i);
+        }
+        ObjectNode document = MAPPER.createObjectNode();
+        document.set("items", items);
+        String original = document.toString();
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"remove\",\"path\":\"/items/0\"}," +
+                "{\"op\":\"add\",\"path\":\"/items/10\",\"value\":\"x\"}," +
+                "{\"op\":\"replace\",\"path\":\"/items/20\",\"value\":\"y\"}," +
+                "{\"op\":\"remove\",\"path\":\"/items/200\"}]");
+
+        try {
+            JsonPatch.applyInPlaceAtomic(patch, document);
+            fail("Failure expected");
+        } catch (JsonPatchApplicationException e) {
+            assertEquals(original, document.toString());
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompiledPatchTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String PATCH = "[{\"op\":\"test\",\"path\":\"/v\",\"value\":1}," +
+            "{\"op\":\"replace\",\"path\":\"/v\",\"value\":2}," +
+            "{\"op\":\"add\",\"path\":\"/tags/-\",\"value\":{\"t\":[1]}}," +
+            "{\"op\":\"copy\",\"from\":\"/tags/0\",\"path\":\"/first\"}," +
+            "{\"op\":\"move\",\"from\":\"/old\",\"path\":\"/new\"}," +
+            "{\"op\":\"remove\",\"path\":\"/gone\"}]";
+
+    private static ObjectNode document(int i) {
+        ObjectNode document = MAPPER.createObjectNode();
+        document.put("id", i).put("v", 1).put("old", "x" + i).put("gone", true);
+        document.putArray("tags").add("a" + i);
+        return document;
+    }
+
+    @Test
+    public void testCompiledPatchIsReusable() throws IOException {
+        CompiledPatch<JsonNode> patch = JsonPatch.compile(MAPPER.readTree(PATCH));
+
+        for (int i = 0; i < 50; i++) {
+            ObjectNode document = document(i);
+            JsonNode expected = JsonPatch.apply(MAPPER.readTree(PATCH), document);
+
+            assertEquals(expected, patch.apply(document));
+            assertEquals(document(i), document);
+            patch.applyInPlace(document);
+            assertEquals(expected, document);
+        }
+    }
+
+    @Test
+    public void testResultsDoNotShareContainerValues() throws IOException {
+        CompiledPatch<JsonNode> patch = JsonPatch.compile(MAPPER.readTree(PATCH));
+
+        JsonNode first = patch.apply(document(1));
+        ((ArrayNode) first.get("tags").get(1).get("t")).add(2);
+
+        assertEquals(MAPPER.readTree("{\"t\":[1]}"), patch.apply(document(2)).get("tags").get(1));
+    }
+
+    @Test
+    public void testChangesToPatchDocumentAfterCompileAreIgnored() throws IOException {
+        ArrayNode patchDocument = (ArrayNode) MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":{\"b\":1}}]");
+        CompiledPatch<JsonNode> patch = JsonPatch.compile(patchDocument);
+
+        ((ObjectNode) patchDocument.get(0).get("value")).put("b", 2);
+        patchDocument.removeAll();
+
+        assertEquals(MAPPER.readTree("{\"a\":{\"b\":1}}"), patch.apply(MAPPER.createObjectNode()));
+    }
+
+    @Test
+    public void testConcurrentApplyGivesSameResults() throws Exception {
+        CompiledPatch<JsonNode> patch = JsonPatch.compile(MAPPER.readTree(PATCH));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<JsonNode>> results = new ArrayList<Future<JsonNode>>();
+            for (int i = 0; i < 200; i++) {
+                ObjectNode document = document(i);
+                results.add(executor.submit(() -> patch.apply(document)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(JsonPatch.apply(MAPPER.readTree(PATCH), document(i)), results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCompileTypedPatch() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":[1,2,3],\"b\":{\"c\":true}}");
+        JsonNode target = MAPPER.readTree("{\"a\":[3,1],\"b\":{\"c\":false,\"d\":[1]}}");
+
+        CompiledPatch<JsonNode> patch = JsonPatch.compile(JsonDiff.asPatch(source, target), CompatibilityFlags.defaults());
+
+        assertEquals(target, patch.apply(source));
+    }
+
+    @Test(expected = InvalidJsonPatchException.class)
+    public void testInvalidPatchFailsToCompile() throws IOException {
+        JsonPatch.compile(MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/a\"}]"));
+    }
+
+    @Test
+    public void testFailedOperationIsReported() throws IOException {
+        CompiledPatch<JsonNode> patch = JsonPatch.compile(MAPPER.readTree(PATCH));
+        ObjectNode document = document(1);
+        document.remove("old");
+
+        try {
+            patch.apply(document);
+            fail("Failure expected");
+        } catch (JsonPatchApplicationException e) {
+            assertEquals(Operation.MOVE, e.getOperation());
+        }
+    }
+
+    // every third document lacks the member the move reads
+    private static List<JsonNode> batch(int size) {
+        List<JsonNode> documents = new ArrayList<JsonNode>();
+        for (int i = 0; i < size; i++) {
+            ObjectNode document = document(i);
+            if (i % 3 == 0)
+                document.remove("old");
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    private static void assertBatch(List<JsonNode> documents, BatchResult<JsonNode> result) throws IOException {
+        assertEquals(documents.size(), result.getResults().size());
+        for (int i = 0; i < documents.size(); i++) {
+            if (i % 3 == 0) {
+                assertNull(result.getResults().get(i));
+                assertEquals(Operation.MOVE, result.getFailures().get(i).getOperation());
+            } else {
+                assertEquals(JsonPatch.apply(MAPPER.readTree(PATCH), documents.get(i)), result.getResults().get(i));
+                assertFalse(result.getFailures().containsKey(i));
+            }
+        }
+        assertEquals((documents.size() + 2) / 3, result.getFailures().size());
+        assertEquals(documents.size() - result.getFailures().size(), result.getSuccessfulResults().size());
+    }
+
+    @Test
+    public void testApplyAllOnForkJoinPool() throws IOException {
+        CompiledPatch<JsonNode> patch = JsonPatch.compile(MAPPER.readTree(PATCH));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<JsonNode> documents = batch(1000);
+
+            assertBatch(documents, patch.applyAll(documents, pool));
+            assertBatch(documents, patch.applyAll(new LinkedList<JsonNode>(documents), pool));
+            assertBatch(documents, patch.applyAll(documents.stream(), pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testApplyAllOnExecutor() throws IOException {
+        CompiledPatch<JsonNode> patch = JsonPatch.compile(MAPPER.readTree(PATCH));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<JsonNode> documents = batch(1000);
+
+            assertBatch(documents, patch.applyAll(documents, executor));
+            assertBatch(documents.subList(0, 1), patch.applyAll(documents.subList(0, 1), executor));
+            assertBatch(documents, patch.applyAll(new LinkedList<JsonNode>(documents), executor));
+            assertBatch(documents, patch.applyAll(documents.stream(), executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testApplyAllHoldsFewChunksOfStream() throws IOException {
+        CompiledPatch<JsonNode> patch = JsonPatch.compile(MAPPER.readTree(PATCH));
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(1) {
+            @Override
+            public void execute(Runnable task) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                super.execute(() -> {
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inFlight.decrementAndGet();
+                    task.run();
+                });
+            }
+        };
+        try {
+            List<JsonNode> documents = batch(5000);
+
+            assertBatch(documents, patch.applyAll(documents.stream(), pool));
+            assertTrue(maxInFlight.get() <= 3);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testApplyAllOfEmptyBatch() throws IOException {
+        CompiledPatch<JsonNode> patch = JsonPatch.compile(MAPPER.readTree(PATCH));
+
+        BatchResult<JsonNode> result = patch.applyAll(IntStream.range(0, 0).mapToObj(i -> (JsonNode) document(i)), ForkJoinPool.commonPool());
+
+        assertEquals(0, result.getResults().size());
+        assertFalse(result.hasFailures());
+    }
+}
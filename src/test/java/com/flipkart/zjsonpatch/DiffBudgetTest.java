@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class DiffBudgetTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testArrayOverComparisonLimitIsReplaced() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":[1,2,3,4,5,6],\"b\":1}");
+        JsonNode target = MAPPER.readTree("{\"a\":[6,5,4,3,2,1],\"b\":2}");
+        DiffBudget budget = DiffBudget.builder().maxArrayComparisons(2).build();
+
+        JsonNode patch = JsonDiff.asJson(source, target, DiffOptions.defaults(), budget);
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":[6,5,4,3,2,1]}," +
+                "{\"op\":\"replace\",\"path\":\"/b\",\"value\":2}]"), patch);
+        assertEquals(target, JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testArrayWithinComparisonLimitIsDiffed() throws IOException {
+        JsonNode source = MAPPER.readTree("[1,2,3,4]");
+        JsonNode target = MAPPER.readTree("[1,2,5,4]");
+        DiffBudget budget = DiffBudget.builder().maxArrayComparisons(100).build();
+
+        JsonNode patch = JsonDiff.asJson(source, target, DiffOptions.defaults(), budget);
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/2\",\"value\":5}]"), patch);
+    }
+
+    @Test
+    public void testFallbackEmitsTestWhenRequested() throws IOException {
+        JsonNode source = MAPPER.readTree("[1,2,3]");
+        JsonNode target = MAPPER.readTree("[3,2,1]");
+        DiffBudget budget = DiffBudget.builder().maxArrayComparisons(0).build();
+        DiffOptions options = DiffOptions.builder().flags(EnumSet.of(DiffFlags.EMIT_TEST_OPERATIONS)).build();
+
+        JsonNode patch = JsonDiff.asJson(source, target, options, budget);
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"test\",\"path\":\"\",\"value\":[1,2,3]}," +
+                "{\"op\":\"replace\",\"path\":\"\",\"value\":[3,2,1]}]"), patch);
+        assertEquals(target, JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testExpiredBudgetStillDiffsObjects() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":{\"x\":1,\"y\":[1,2,3]},\"b\":true}");
+        JsonNode target = MAPPER.readTree("{\"a\":{\"x\":2,\"y\":[3,1,2]},\"b\":true}");
+        DiffBudget budget = DiffBudget.builder().timeout(Duration.ZERO).build();
+
+        JsonNode patch = JsonDiff.asJson(source, target, DiffOptions.defaults(), budget);
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/a/x\",\"value\":2}," +
+                "{\"op\":\"replace\",\"path\":\"/a/y\",\"value\":[3,1,2]}]"), patch);
+        assertEquals(target, JsonPatch.apply(patch, source));
+    }
+
+    @Test(expected = DiffCancelledException.class)
+    public void testCancelledBudgetAbortsDiff() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":[1,2,3]}");
+        JsonNode target = MAPPER.readTree("{\"a\":[3,2,1]}");
+        DiffBudget budget = DiffBudget.builder().build();
+        budget.cancel();
+
+        JsonDiff.asJson(source, target, DiffOptions.defaults(), budget);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DiffSinkTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static ArrayNode samples;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        try (InputStream resourceAsStream = DiffSinkTest.class.getResourceAsStream("/testdata/sample.json")) {
+            samples = (ArrayNode) MAPPER.readTree(IOUtils.toString(resourceAsStream, StandardCharsets.UTF_8));
+        }
+    }
+
+    // rebuilds the patch document from the sink calls
+    private static DiffSink<JsonNode> collectInto(ArrayNode patch) {
+        return (operation, from, path, value, fromValue) -> {
+            ObjectNode node = patch.addObject();
+            node.put("op", operation.rfcName());
+            if (from != null)
+                node.put("from", from);
+            if (fromValue != null)
+                node.set("fromValue", fromValue);
+            node.put("path", path);
+            if (value != null)
+                node.set("value", value);
+        };
+    }
+
+    @Test
+    public void testSinkReceivesSameOperationsAsPatch() {
+        for (EnumSet<DiffFlags> flags : List.of(DiffFlags.defaults(), EnumSet.noneOf(DiffFlags.class),
+                EnumSet.of(DiffFlags.EMIT_TEST_OPERATIONS, DiffFlags.ADD_ORIGINAL_VALUE_ON_REPLACE),
+                EnumSet.of(DiffFlags.ADD_EXPLICIT_REMOVE_ADD_ON_REPLACE, DiffFlags.OMIT_VALUE_ON_REMOVE))) {
+            DiffOptions options = DiffOptions.builder().flags(flags).build();
+            for (JsonNode sample : samples) {
+                ArrayNode collected = MAPPER.createArrayNode();
+
+                JsonDiff.diff(sample.get("first"), sample.get("second"), options, collectInto(collected));
+
+                assertEquals(JsonDiff.asJson(sample.get("first"), sample.get("second"), options), collected);
+            }
+        }
+    }
+
+    @Test
+    public void testMoveHasFromAndNoValue() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":{\"x\":[1,2,3]}}");
+        JsonNode target = MAPPER.readTree("{\"b\":{\"x\":[1,2,3]}}");
+
+        JsonDiff.diff(source, target, DiffOptions.defaults(), (operation, from, path, value, fromValue) -> {
+            assertEquals(Operation.MOVE, operation);
+            assertEquals("/a", from);
+            assertEquals("/b", path);
+            assertNull(value);
+            assertNull(fromValue);
+        });
+    }
+
+    @Test
+    public void testStreamingDiffFeedsSink() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":[1,2],\"b\":\"x\"}");
+        JsonNode target = MAPPER.readTree("{\"a\":[1],\"b\":\"y\"}");
+        ArrayNode collected = MAPPER.createArrayNode();
+
+        try (JsonParser sourceParser = MAPPER.createParser(source.toString());
+             JsonParser targetParser = MAPPER.createParser(target.toString())) {
+            JsonDiff.diffStreaming(sourceParser, targetParser, DiffOptions.defaults(), collectInto(collected));
+        }
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"remove\",\"path\":\"/a/1\"}," +
+                "{\"op\":\"replace\",\"path\":\"/b\",\"value\":\"y\"}]"), collected);
+    }
+}
@@ -20,10 +20,13 @@ import org.apache.commons.io.output.StringBuilderWriter;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.JsonParser;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -39,13 +42,15 @@ abstract class Jackson3AbstractTest {
         return true;
     }
 
+    private enum ApplyMode { COPYING, IN_PLACE, COMPILED, SHARING, ATOMIC, PARSED, STREAMING }
+
     @ParameterizedTest
     @MethodSource("data")
     void testApply(Jackson3PatchTestCase p) throws Exception {
         if (p.isOperation()) {
-            testOperation(p, false);
+            testOperation(p, ApplyMode.COPYING);
         } else {
-            testError(p, false);
+            testError(p, ApplyMode.COPYING);
         }
     }
 
@@ -53,13 +58,63 @@ abstract class Jackson3AbstractTest {
     @MethodSource("data")
     void testApplyInPlace(Jackson3PatchTestCase p) throws Exception {
         if (p.isOperation() && p.isApplyInPlaceSupported()) {
-            testOperation(p, true);
+            testOperation(p, ApplyMode.IN_PLACE);
+        } else {
+            testError(p, ApplyMode.IN_PLACE);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("data")
+    void testApplyCompiled(Jackson3PatchTestCase p) throws Exception {
+        if (p.isOperation()) {
+            testOperation(p, ApplyMode.COMPILED);
+        } else {
+            testError(p, ApplyMode.COMPILED);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("data")
+    void testApplyWithSharing(Jackson3PatchTestCase p) throws Exception {
+        if (p.isOperation()) {
+            testOperation(p, ApplyMode.SHARING);
+        } else {
+            testError(p, ApplyMode.SHARING);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("data")
+    void testApplyInPlaceAtomic(Jackson3PatchTestCase p) throws Exception {
+        if (p.isOperation() && p.isApplyInPlaceSupported()) {
+            testOperation(p, ApplyMode.ATOMIC);
         } else {
-            testError(p, true);
+            testError(p, ApplyMode.ATOMIC);
         }
     }
 
-    private void testOperation(Jackson3PatchTestCase p, boolean inPlace) {
+    @ParameterizedTest
+    @MethodSource("data")
+    void testApplyParsed(Jackson3PatchTestCase p) throws Exception {
+        if (p.isOperation()) {
+            testOperation(p, ApplyMode.PARSED);
+        } else {
+            testError(p, ApplyMode.PARSED);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("data")
+    void testApplyStreaming(Jackson3PatchTestCase p) throws Exception {
+        if (p.isOperation()) {
+            testOperation(p, ApplyMode.STREAMING);
+        } else {
+            testError(p, ApplyMode.STREAMING);
+        }
+    }
+
+    private void testOperation(Jackson3PatchTestCase p, ApplyMode mode) {
         JsonNode node = p.getNode();
 
         JsonNode doc = node.get("node");
@@ -68,9 +123,22 @@ abstract class Jackson3AbstractTest {
         String message = node.has("message") ? node.get("message").toString() : "";
 
         JsonNode result;
-        if (inPlace) {
+        if (mode == ApplyMode.IN_PLACE) {
             result = doc.deepCopy();
             Jackson3JsonPatch.applyInPlace(patch, result);
+        } else if (mode == ApplyMode.COMPILED) {
+            result = Jackson3JsonPatch.compile(patch).apply(doc);
+        } else if (mode == ApplyMode.ATOMIC) {
+            result = doc.deepCopy();
+            Jackson3JsonPatch.applyInPlaceAtomic(patch, result);
+        } else if (mode == ApplyMode.SHARING) {
+            JsonNode original = doc.deepCopy();
+            result = Jackson3JsonPatch.applyWithSharing(patch, doc);
+            assertEquals(original, doc, "source changed");
+        } else if (mode == ApplyMode.PARSED) {
+            result = Jackson3JsonPatch.apply(Jackson3TestUtils.DEFAULT_MAPPER.createParser(patch.toString()), doc);
+        } else if (mode == ApplyMode.STREAMING) {
+            result = applyStreaming(patch, doc);
         } else {
             result = Jackson3JsonPatch.apply(patch, doc);
         }
@@ -80,6 +148,16 @@ abstract class Jackson3AbstractTest {
         assertEquals(expected, result, failMessage);
     }
 
+    private static JsonNode applyStreaming(JsonNode patch, JsonNode source) {
+        ObjectMapper mapper = Jackson3TestUtils.DEFAULT_MAPPER;
+        StringWriter output = new StringWriter();
+        try (JsonParser parser = mapper.createParser(source.toString());
+             JsonGenerator generator = mapper.createGenerator(output)) {
+            Jackson3JsonPatch.applyStreaming(Jackson3JsonPatch.compile(patch), parser, generator);
+        }
+        return mapper.readTree(output.toString());
+    }
+
     private Class<?> exceptionType(String type) throws ClassNotFoundException {
         return Class.forName(type.contains(".") ? type : "com.flipkart.zjsonpatch." + type);
     }
@@ -99,7 +177,7 @@ abstract class Jackson3AbstractTest {
         return res.toString();
     }
 
-    private void testError(Jackson3PatchTestCase p, boolean inPlace) throws Exception {
+    private void testError(Jackson3PatchTestCase p, ApplyMode mode) throws Exception {
         JsonNode node = p.getNode();
         JsonNode first = node.get("node");
         JsonNode patch = node.get("op");
@@ -108,9 +186,24 @@ abstract class Jackson3AbstractTest {
                 node.has("type") ? exceptionType(node.get("type").asString()) : JsonPatchApplicationException.class;
 
         try {
-            if (inPlace) {
+            if (mode == ApplyMode.IN_PLACE) {
                 JsonNode target = first.deepCopy();
                 Jackson3JsonPatch.applyInPlace(patch, target);
+            } else if (mode == ApplyMode.COMPILED) {
+                Jackson3JsonPatch.compile(patch).apply(first);
+            } else if (mode == ApplyMode.SHARING) {
+                Jackson3JsonPatch.applyWithSharing(patch, first);
+            } else if (mode == ApplyMode.ATOMIC) {
+                JsonNode target = first.deepCopy();
+                try {
+                    Jackson3JsonPatch.applyInPlaceAtomic(patch, target);
+                } finally {
+                    assertEquals(first.toString(), target.toString(), "document not rolled back");
+                }
+            } else if (mode == ApplyMode.PARSED) {
+                Jackson3JsonPatch.apply(Jackson3TestUtils.DEFAULT_MAPPER.createParser(patch.toString()), first);
+            } else if (mode == ApplyMode.STREAMING) {
+                applyStreaming(patch, first);
             } else {
                 Jackson3JsonPatch.apply(patch, first);
             }
@@ -17,11 +17,15 @@
 package com.flipkart.zjsonpatch;
 
 import org.junit.jupiter.api.Test;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.JsonParser;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ArrayNode;
 import tools.jackson.databind.node.ObjectNode;
 
+import java.io.StringWriter;
 import java.util.EnumSet;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -100,6 +104,49 @@ class Jackson3ApiTest {
         assertThrows(InvalidJsonPatchException.class, () -> Jackson3JsonPatch.validate(invalid));
     }
 
+    @Test
+    void runOfArrayChangesIsAppliedInPlace() {
+        ArrayNode list = objectMapper.createArrayNode();
+        for (int i = 0; i < 100; i++) {
+            list.add(i);
+        }
+        ArrayNode patch = objectMapper.createArrayNode();
+        for (int i = 0; i < 60; i++) {
+            patch.addObject().put("op", "remove").put("path", "/5");
+        }
+        patch.addObject().put("op", "add").put("path", "/5").put("value", "x");
+        patch.addObject().put("op", "replace").put("path", "/0").put("value", "y");
+
+        Jackson3JsonPatch.applyInPlace(patch, list);
+
+        assertEquals(41, list.size());
+        assertEquals("y", list.get(0).asString());
+        assertEquals("x", list.get(5).asString());
+        assertEquals(65, list.get(6).intValue());
+    }
+
+    @Test
+    void patchIsAppliedToStreamedDocument() {
+        JsonNode patch = readTree("[{\"op\":\"replace\",\"path\":\"/a/1\",\"value\":\"x\"},{\"op\":\"add\",\"path\":\"/b\",\"value\":[]}]");
+        StringWriter output = new StringWriter();
+
+        try (JsonParser source = objectMapper.createParser("{\"a\":[0,1,2],\"c\":{}}");
+             JsonGenerator target = objectMapper.createGenerator(output)) {
+            Jackson3JsonPatch.applyStreaming(Jackson3JsonPatch.compile(patch), source, target);
+        }
+
+        assertEquals("{\"a\":[0,\"x\",2],\"c\":{},\"b\":[]}", output.toString());
+    }
+
+    @Test
+    void redundantOperationsAreOptimizedAway() {
+        JsonNode patch = readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":{}},{\"op\":\"add\",\"path\":\"/a/b\",\"value\":1}," +
+                "{\"op\":\"replace\",\"path\":\"/c\",\"value\":1},{\"op\":\"replace\",\"path\":\"/c\",\"value\":2}]");
+
+        assertEquals(readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":{\"b\":1}},{\"op\":\"replace\",\"path\":\"/c\",\"value\":2}]"),
+                Jackson3JsonPatch.optimize(patch));
+    }
+
     private static JsonNode readTree(String jsonString) {
         return objectMapper.readTree(jsonString);
     }
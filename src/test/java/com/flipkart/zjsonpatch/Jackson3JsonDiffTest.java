@@ -19,12 +19,14 @@ package com.flipkart.zjsonpatch;
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import tools.jackson.core.JsonParser;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 import tools.jackson.databind.node.ArrayNode;
 import tools.jackson.databind.node.ObjectNode;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -170,4 +172,65 @@ class Jackson3JsonDiffTest {
         assertEquals(JsonPointer.ROOT.toString(), diff.get(0).get("path").asString());
         assertEquals("V1", diff.get(0).get("value").get("K1").asString());
     }
+
+    @Test
+    void testStreamingDiffOfSamples() {
+        for (int i = 0; i < jsonNode.size(); i++) {
+            JsonNode first = jsonNode.get(i).get("first");
+            JsonNode second = jsonNode.get(i).get("second");
+            try (JsonParser source = objectMapper.createParser(first.toString());
+                 JsonParser target = objectMapper.createParser(second.toString())) {
+                JsonNode patch = Jackson3JsonDiff.asJsonStreaming(source, target, DiffOptions.defaults());
+
+                assertEquals(second, Jackson3JsonPatch.apply(patch, first), patch.toString());
+            }
+        }
+    }
+
+    @Test
+    void testDiffSinkReceivesSameOperationsAsPatch() {
+        for (int i = 0; i < jsonNode.size(); i++) {
+            JsonNode first = jsonNode.get(i).get("first");
+            JsonNode second = jsonNode.get(i).get("second");
+            ArrayNode collected = objectMapper.createArrayNode();
+
+            Jackson3JsonDiff.diff(first, second, DiffOptions.defaults(), (operation, from, path, value, fromValue) -> {
+                ObjectNode node = collected.addObject();
+                node.put("op", operation.rfcName());
+                if (from != null)
+                    node.put("from", from);
+                node.put("path", path);
+                if (value != null)
+                    node.set("value", value);
+            });
+
+            assertEquals(Jackson3JsonDiff.asJson(first, second), collected);
+        }
+    }
+
+    @Test
+    void testWrittenPatchEqualsTreePatch() {
+        for (int i = 0; i < jsonNode.size(); i++) {
+            JsonNode first = jsonNode.get(i).get("first");
+            JsonNode second = jsonNode.get(i).get("second");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            Jackson3JsonDiff.writeTo(first, second, DiffOptions.defaults(), out);
+
+            assertEquals(Jackson3JsonDiff.asJson(first, second), objectMapper.readTree(out.toByteArray()));
+        }
+    }
+
+    @Test
+    void testPatchAppliesWithoutPatchDocument() {
+        for (int i = 0; i < jsonNode.size(); i++) {
+            JsonNode first = jsonNode.get(i).get("first");
+            JsonNode second = jsonNode.get(i).get("second");
+
+            Patch<JsonNode> patch = Jackson3JsonDiff.asPatch(first, second);
+
+            assertEquals(Jackson3JsonDiff.asJson(first, second), patch.toJson());
+            assertEquals(second, Jackson3JsonPatch.apply(patch, first), patch.toString());
+        }
+    }
 }
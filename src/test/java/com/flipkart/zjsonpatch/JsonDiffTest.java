@@ -156,4 +156,46 @@ public class JsonDiffTest {
         assertEquals(JsonPointer.ROOT.toString(), diff.get(0).get("path").textValue());
         assertEquals("V1", diff.get(0).get("value").get("K1").textValue());
     }
+
+    @Test
+    public void testReshuffledArrayRoundTripsThroughMoves() {
+        ArrayNode source = objectMapper.createArrayNode();
+        for (int i = 0; i < 2000; i++) {
+            source.addObject().put("id", i).put("name", "item-" + i);
+        }
+        ArrayNode target = source.deepCopy();
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            target.insert(random.nextInt(target.size()), target.remove(random.nextInt(target.size())));
+        }
+
+        JsonNode diff = JsonDiff.asJson(source, target);
+
+        int moves = 0;
+        for (JsonNode op : diff) {
+            if (Operation.MOVE.rfcName().equals(op.get("op").textValue()))
+                moves++;
+        }
+        Assert.assertTrue(moves > 0);
+        assertEquals(target, JsonPatch.apply(diff, source));
+    }
+
+    @Test
+    public void testCopyCandidateMinNodesKeepsSmallValuesAsAdd() throws IOException {
+        JsonNode source = objectMapper.readTree("{\"a\":\"x\",\"b\":{\"c\":1,\"d\":2}}");
+        JsonNode target = objectMapper.readTree("{\"a\":\"x\",\"b\":{\"c\":1,\"d\":2},\"e\":\"x\",\"f\":{\"c\":1,\"d\":2}}");
+        DiffOptions options = DiffOptions.builder()
+                .flags(EnumSet.of(DiffFlags.OMIT_MOVE_OPERATION))
+                .copyCandidateMinNodes(3)
+                .build();
+
+        JsonNode diff = JsonDiff.asJson(source, target, options);
+
+        assertEquals(2, diff.size());
+        assertEquals(Operation.ADD.rfcName(), diff.get(0).get("op").textValue());
+        assertEquals("/e", diff.get(0).get("path").textValue());
+        assertEquals(Operation.COPY.rfcName(), diff.get(1).get("op").textValue());
+        assertEquals("/b", diff.get(1).get("from").textValue());
+        assertEquals(target, JsonPatch.apply(diff, source));
+    }
 }
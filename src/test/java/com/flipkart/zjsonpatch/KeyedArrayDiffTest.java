@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class KeyedArrayDiffTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final DiffOptions BY_ID = DiffOptions.builder()
+            .arrayIdentityField("/items", "id")
+            .build();
+
+    @Test
+    public void testChangedElementIsAddressedByKey() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"items\":[{\"id\":1,\"price\":10},{\"id\":2,\"price\":20}]}");
+        JsonNode target = MAPPER.readTree("{\"items\":[{\"id\":1,\"price\":10},{\"id\":2,\"price\":25}]}");
+
+        JsonNode patch = JsonDiff.asJson(source, target, BY_ID);
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/items/id=2/price\",\"value\":25}]"), patch);
+        assertEquals(target, JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testReorderIsExpressedAsMovesFromKeys() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"items\":[{\"id\":\"a\"},{\"id\":\"b\"},{\"id\":\"c\"},{\"id\":\"d\"}]}");
+        JsonNode target = MAPPER.readTree("{\"items\":[{\"id\":\"d\"},{\"id\":\"a\"},{\"id\":\"b\"},{\"id\":\"c\"}]}");
+
+        JsonNode patch = JsonDiff.asJson(source, target, BY_ID);
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"move\",\"from\":\"/items/id=d\",\"path\":\"/items/0\"}]"), patch);
+        assertEquals(target, JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testRemovedElementIsAddressedByKey() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"items\":[{\"id\":1},{\"id\":2},{\"id\":3}]}");
+        JsonNode target = MAPPER.readTree("{\"items\":[{\"id\":1},{\"id\":3},{\"id\":4}]}");
+
+        JsonNode patch = JsonDiff.asJson(source, target, DiffOptions.builder()
+                .flags(EnumSet.of(DiffFlags.EMIT_TEST_OPERATIONS, DiffFlags.OMIT_VALUE_ON_REMOVE))
+                .arrayIdentityField("/items", "id")
+                .build());
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"test\",\"path\":\"/items/id=2\",\"value\":{\"id\":2}}," +
+                "{\"op\":\"remove\",\"path\":\"/items/id=2\"}," +
+                "{\"op\":\"add\",\"path\":\"/items/2\",\"value\":{\"id\":4}}]"), patch);
+        assertEquals(target, JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testWildcardMatchesNestedArrays() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"orders\":[{\"id\":7,\"lines\":[{\"sku\":\"x\",\"qty\":1},{\"sku\":\"y\",\"qty\":1}]}]}");
+        JsonNode target = MAPPER.readTree("{\"orders\":[{\"id\":7,\"lines\":[{\"sku\":\"y\",\"qty\":2},{\"sku\":\"x\",\"qty\":1}]}]}");
+        DiffOptions options = DiffOptions.builder()
+                .arrayIdentityField("/orders", "id")
+                .arrayIdentityField("/orders/*/lines", "sku")
+                .build();
+
+        JsonNode patch = JsonDiff.asJson(source, target, options);
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/orders/id=7/lines/sku=y/qty\",\"value\":2}," +
+                "{\"op\":\"move\",\"from\":\"/orders/id=7/lines/sku=x\",\"path\":\"/orders/id=7/lines/1\"}]"), patch);
+        assertEquals(target, JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testDuplicateKeysFallBackToPositionalDiff() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"items\":[{\"id\":1,\"v\":1},{\"id\":1,\"v\":2}]}");
+        JsonNode target = MAPPER.readTree("{\"items\":[{\"id\":1,\"v\":1},{\"id\":1,\"v\":3}]}");
+
+        JsonNode patch = JsonDiff.asJson(source, target, BY_ID);
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/items/1/v\",\"value\":3}]"), patch);
+    }
+
+    @Test
+    public void testMissingKeysFallBackToPositionalDiff() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"items\":[{\"id\":1},{\"name\":\"x\"}]}");
+        JsonNode target = MAPPER.readTree("{\"items\":[{\"id\":1},{\"name\":\"y\"}]}");
+
+        JsonNode patch = JsonDiff.asJson(source, target, BY_ID);
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/items/1/name\",\"value\":\"y\"}]"), patch);
+    }
+
+    @Test
+    public void testRandomKeyedArraysRoundTrip() {
+        Random random = new Random(3);
+        List<DiffOptions> optionsList = new ArrayList<DiffOptions>();
+        for (EnumSet<DiffFlags> flags : List.of(DiffFlags.defaults(), EnumSet.noneOf(DiffFlags.class),
+                DiffFlags.dontNormalizeOpIntoMoveAndCopy(), EnumSet.of(DiffFlags.EMIT_TEST_OPERATIONS))) {
+            optionsList.add(DiffOptions.builder().flags(flags).arrayIdentityField("/items", "id").build());
+        }
+        for (int i = 0; i < 500; i++) {
+            ObjectNode source = MAPPER.createObjectNode();
+            ObjectNode target = MAPPER.createObjectNode();
+            fillItems(random, source.putArray("items"), target.putArray("items"));
+            if (random.nextBoolean())
+                source.put("extra", random.nextInt(3));
+            if (random.nextBoolean())
+                target.put("extra", random.nextInt(3));
+
+            for (DiffOptions options : optionsList) {
+                JsonNode patch = JsonDiff.asJson(source, target, options);
+                assertEquals(patch.toString(), target, JsonPatch.apply(patch, source));
+            }
+        }
+    }
+
+    private static void fillItems(Random random, ArrayNode source, ArrayNode target) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int id = 0; id < 12; id++) {
+            ids.add(id);
+        }
+        Collections.shuffle(ids, random);
+        for (int id : ids) {
+            if (random.nextInt(4) > 0)
+                source.addObject().put("id", id).put("v", random.nextInt(2)).putArray("tags").add(random.nextInt(2));
+        }
+        Collections.shuffle(ids, random);
+        for (int id : ids) {
+            if (random.nextInt(4) > 0)
+                target.addObject().put("id", id).put("v", random.nextInt(2)).putArray("tags").add(random.nextInt(2));
+        }
+    }
+
+    @Test
+    public void testRemoveAndReplaceByKeyRefInPlace() throws IOException {
+        JsonNode document = MAPPER.readTree("{\"items\":[{\"id\":1},{\"id\":2},{\"id\":3}]}");
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"remove\",\"path\":\"/items/id=2\"}," +
+                "{\"op\":\"replace\",\"path\":\"/items/id=3\",\"value\":{\"id\":3,\"v\":true}}]");
+
+        JsonPatch.applyInPlace(patch, document);
+
+        assertEquals(MAPPER.readTree("{\"items\":[{\"id\":1},{\"id\":3,\"v\":true}]}"), document);
+    }
+
+    @Test(expected = JsonPatchApplicationException.class)
+    public void testRemoveMissingKeyRefFails() throws IOException {
+        JsonNode document = MAPPER.readTree("{\"items\":[{\"id\":1}]}");
+        JsonPatch.apply(MAPPER.readTree("[{\"op\":\"remove\",\"path\":\"/items/id=2\"}]"), document);
+    }
+}
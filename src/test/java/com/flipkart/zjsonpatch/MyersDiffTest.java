@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MyersDiffTest {
+
+    private static int[] matches(final String source, final String target) {
+        return new MyersDiff(source.length(), target.length(),
+                (srcIdx, targetIdx) -> source.charAt(srcIdx) == target.charAt(targetIdx)).matches();
+    }
+
+    @Test
+    public void testMatchesOfIdenticalSequences() {
+        assertArrayEquals(new int[]{0, 0, 1, 1, 2, 2}, matches("abc", "abc"));
+    }
+
+    @Test
+    public void testMatchesOfDisjointSequences() {
+        assertArrayEquals(new int[0], matches("abc", "xyz"));
+        assertArrayEquals(new int[0], matches("", "xyz"));
+        assertArrayEquals(new int[0], matches("abc", ""));
+    }
+
+    @Test
+    public void testMatchesFormLongestCommonSubsequence() {
+        // classic example from Myers' paper, LCS "CABA" has length 4
+        String source = "ABCABBA";
+        String target = "CBABAC";
+        int[] matches = matches(source, target);
+
+        assertEquals(8, matches.length);
+        for (int i = 0; i < matches.length; i += 2) {
+            assertEquals(source.charAt(matches[i]), target.charAt(matches[i + 1]));
+            if (i > 0) {
+                assertTrue(matches[i] > matches[i - 2]);
+                assertTrue(matches[i + 1] > matches[i - 1]);
+            }
+        }
+    }
+
+    @Test
+    public void testLargeArrayWithFewChangesProducesMinimalPatch() {
+        ArrayNode source = JsonNodeFactory.instance.arrayNode();
+        for (int i = 0; i < 20000; i++) {
+            source.add("element-" + i);
+        }
+        ArrayNode target = source.deepCopy();
+        target.remove(15000);
+        target.insert(10000, "inserted");
+        target.remove(5);
+
+        JsonNode patch = JsonDiff.asJson(source, target, DiffFlags.dontNormalizeOpIntoMoveAndCopy());
+
+        assertEquals(3, patch.size());
+        assertEquals(target, JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testAppendAndTruncateOnlyTouchTheEnd() {
+        ArrayNode source = JsonNodeFactory.instance.arrayNode();
+        for (int i = 0; i < 100000; i++) {
+            source.add(i);
+        }
+        ArrayNode appended = source.deepCopy().add("last");
+        ArrayNode truncated = source.deepCopy();
+        truncated.remove(99999);
+
+        JsonNode patch = JsonDiff.asJson(source, appended);
+        assertEquals(1, patch.size());
+        assertEquals("/100000", patch.get(0).get("path").textValue());
+
+        patch = JsonDiff.asJson(source, truncated);
+        assertEquals(1, patch.size());
+        assertEquals("remove", patch.get(0).get("op").textValue());
+        assertEquals("/99999", patch.get(0).get("path").textValue());
+    }
+
+    @Test
+    public void testChangeInsideCommonPrefixAndSuffix() throws Exception {
+        JsonNode source = TestUtils.DEFAULT_MAPPER.readTree("[1,2,3,{\"a\":1},5,6]");
+        JsonNode target = TestUtils.DEFAULT_MAPPER.readTree("[1,2,3,{\"a\":2},5,6]");
+
+        JsonNode patch = JsonDiff.asJson(source, target);
+        assertEquals(1, patch.size());
+        assertEquals("/3/a", patch.get(0).get("path").textValue());
+    }
+
+    @Test
+    public void testRandomArraysRoundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            ArrayNode source = randomArray(random);
+            ArrayNode target = randomArray(random);
+            JsonNode patch = JsonDiff.asJson(source, target, DiffFlags.dontNormalizeOpIntoMoveAndCopy());
+            assertEquals(target, JsonPatch.apply(patch, source));
+        }
+    }
+
+    @Test
+    public void testLinearSpaceModeMatchesTraceMode() {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            final String source = randomString(random, 120);
+            final String target = randomString(random, 120);
+            MyersDiff.Equivalence equivalence = (srcIdx, targetIdx) -> source.charAt(srcIdx) == target.charAt(targetIdx);
+
+            int[] expected = new MyersDiff(source.length(), target.length(), equivalence).matches();
+            assertArrayEquals(expected, new MyersDiff(source.length(), target.length(), equivalence, 0).matches());
+            assertArrayEquals(expected, new MyersDiff(source.length(), target.length(), equivalence, 50).matches());
+        }
+    }
+
+    @Test
+    public void testLinearSpaceThresholdDoesNotChangePatch() {
+        Random random = new Random(11);
+        DiffOptions linear = DiffOptions.builder().linearSpaceThreshold(0).build();
+        for (int i = 0; i < 100; i++) {
+            ArrayNode source = randomArray(random);
+            ArrayNode target = randomArray(random);
+            assertEquals(JsonDiff.asJson(source, target), JsonDiff.asJson(source, target, linear));
+        }
+    }
+
+    private static String randomString(Random random, int maxLength) {
+        StringBuilder sb = new StringBuilder();
+        int size = random.nextInt(maxLength);
+        for (int i = 0; i < size; i++) {
+            sb.append((char) ('a' + random.nextInt(4)));
+        }
+        return sb.toString();
+    }
+
+    private static ArrayNode randomArray(Random random) {
+        ArrayNode array = JsonNodeFactory.instance.arrayNode();
+        int size = random.nextInt(30);
+        for (int i = 0; i < size; i++) {
+            array.add(random.nextInt(6));
+        }
+        return array;
+    }
+}
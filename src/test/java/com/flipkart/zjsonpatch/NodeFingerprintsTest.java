@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.flipkart.zjsonpatch.mapping.JacksonVersionBridge;
+import com.flipkart.zjsonpatch.mapping.JsonNodeWrapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NodeFingerprintsTest {
+
+    private static JsonNodeWrapper wrap(String json) throws IOException {
+        return JacksonVersionBridge.wrap(TestUtils.DEFAULT_MAPPER.readTree(json));
+    }
+
+    @Test
+    public void testFieldOrderDoesNotAffectFingerprint() throws IOException {
+        NodeFingerprints fingerprints = new NodeFingerprints();
+        JsonNodeWrapper first = wrap("{\"a\":1,\"b\":[1,2,{\"c\":null}]}");
+        JsonNodeWrapper second = wrap("{\"b\":[1,2,{\"c\":null}],\"a\":1}");
+
+        assertEquals(fingerprints.hash(first), fingerprints.hash(second));
+        assertTrue(fingerprints.equivalent(first, second));
+    }
+
+    @Test
+    public void testArrayOrderAffectsFingerprint() throws IOException {
+        NodeFingerprints fingerprints = new NodeFingerprints();
+        JsonNodeWrapper first = wrap("[1,2,3]");
+        JsonNodeWrapper second = wrap("[3,2,1]");
+
+        assertFalse(fingerprints.equivalent(first, second));
+    }
+
+    @Test
+    public void testSameNodeThroughDifferentWrappersIsEquivalent() throws IOException {
+        NodeFingerprints fingerprints = new NodeFingerprints();
+        JsonNodeWrapper root = wrap("{\"a\":{\"b\":[1,2]}}");
+
+        assertTrue(fingerprints.equivalent(root.get("a"), root.get("a")));
+        assertEquals(fingerprints.hash(root.get("a")), fingerprints.hash(root.get("a")));
+    }
+
+    @Test
+    public void testEquivalentAgreesWithEquals() throws IOException {
+        NodeFingerprints fingerprints = new NodeFingerprints();
+        List<JsonNodeWrapper> nodes = new ArrayList<JsonNodeWrapper>();
+        for (JsonNode node : TestUtils.DEFAULT_MAPPER.readTree(
+                "[1, 1.0, \"1\", true, null, [], {}, [1], {\"a\":1}, {\"a\":1.0}, {\"a\":[1,{\"b\":2}]}, {\"a\":[1,{\"b\":2}]}, [[1],[2]], [[2],[1]]]")) {
+            nodes.add(JacksonVersionBridge.wrap(node));
+        }
+
+        for (JsonNodeWrapper a : nodes) {
+            for (JsonNodeWrapper b : nodes) {
+                assertEquals(a + " vs " + b, a.equals(b), fingerprints.equivalent(a, b));
+            }
+        }
+    }
+
+    @Test
+    public void testNodeCountIncludesAllDescendants() throws IOException {
+        NodeFingerprints fingerprints = new NodeFingerprints();
+
+        assertEquals(1, fingerprints.nodeCount(wrap("\"scalar\"")));
+        assertEquals(1, fingerprints.nodeCount(wrap("{}")));
+        assertEquals(6, fingerprints.nodeCount(wrap("{\"a\":[1,2],\"b\":{\"c\":null}}")));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class OwnershipTransferTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final EnumSet<CompatibilityFlags> TRANSFER = EnumSet.of(CompatibilityFlags.TRANSFER_VALUE_OWNERSHIP);
+
+    @Test
+    public void testValuesAreInsertedByReference() throws IOException {
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":{\"b\":[1]}}," +
+                "{\"op\":\"replace\",\"path\":\"/c\",\"value\":[2]}," +
+                "{\"op\":\"test\",\"path\":\"/c\",\"value\":[2]}]");
+        JsonNode document = MAPPER.readTree("{\"c\":1}");
+
+        JsonPatch.applyInPlace(patch, document, TRANSFER);
+
+        assertEquals(MAPPER.readTree("{\"c\":[2],\"a\":{\"b\":[1]}}"), document);
+        assertSame(patch.get(0).get("value"), document.get("a"));
+        assertSame(patch.get(1).get("value"), document.get("c"));
+    }
+
+    @Test
+    public void testValuesAreCopiedByDefault() throws IOException {
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":{\"b\":[1]}}]");
+
+        JsonNode result = JsonPatch.apply(patch, MAPPER.createObjectNode());
+
+        assertEquals(patch.get(0).get("value"), result.get("a"));
+        assertNotSame(patch.get(0).get("value"), result.get("a"));
+    }
+
+    @Test
+    public void testTypedPatchValuesAreInsertedByReference() throws IOException {
+        JsonNode source = MAPPER.readTree("{}");
+        JsonNode target = MAPPER.readTree("{\"a\":{\"b\":1}}");
+
+        JsonNode result = JsonPatch.apply(JsonDiff.asPatch(source, target), source, TRANSFER);
+
+        assertSame(target.get("a"), result.get("a"));
+    }
+
+    @Test
+    public void testCompiledPatchStillCopiesPerDocument() throws IOException {
+        CompiledPatch<JsonNode> patch = JsonPatch.compile(MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":[1]}]"), TRANSFER);
+
+        JsonNode first = patch.apply(MAPPER.createObjectNode());
+        JsonNode second = patch.apply(MAPPER.createObjectNode());
+
+        assertNotSame(first.get("a"), second.get("a"));
+    }
+
+    @Test
+    public void testDiffReferencesAddedArrayElements() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"items\":[{\"id\":1}],\"tags\":[\"a\"]}");
+        JsonNode target = MAPPER.readTree("{\"items\":[{\"id\":1},{\"id\":2,\"v\":[1]}],\"tags\":[\"a\",{\"t\":1}]}");
+        EnumSet<DiffFlags> flags = DiffFlags.defaults();
+        flags.add(DiffFlags.TRANSFER_VALUE_OWNERSHIP);
+
+        ArrayNode patch = (ArrayNode) JsonDiff.asJson(source, target, flags);
+
+        assertEquals(JsonDiff.asJson(source, target), patch);
+        assertSame(target.get("items").get(1), patch.get(0).get("value"));
+        assertSame(target.get("tags").get(1), patch.get(1).get("value"));
+        assertNotSame(target.get("items").get(1), JsonDiff.asJson(source, target).get(0).get("value"));
+    }
+}
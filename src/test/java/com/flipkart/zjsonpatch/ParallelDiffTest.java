@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelDiffTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutdownPool() {
+        POOL.shutdown();
+    }
+
+    @Test
+    public void testParallelPatchEqualsSequentialPatch() {
+        Random random = new Random(11);
+        for (EnumSet<DiffFlags> flags : List.of(DiffFlags.defaults(), DiffFlags.dontNormalizeOpIntoMoveAndCopy(),
+                EnumSet.of(DiffFlags.EMIT_TEST_OPERATIONS))) {
+            DiffOptions sequential = DiffOptions.builder().flags(flags).arrayIdentityField("/*/items", "id").build();
+            DiffOptions parallel = DiffOptions.builder().flags(flags).arrayIdentityField("/*/items", "id")
+                    .parallel(POOL).parallelThreshold(1).build();
+            for (int i = 0; i < 200; i++) {
+                JsonNode source = randomDocument(random);
+                JsonNode target = mutate(random, source);
+
+                JsonNode expected = JsonDiff.asJson(source, target, sequential);
+
+                assertEquals(expected, JsonDiff.asJson(source, target, parallel));
+            }
+        }
+    }
+
+    @Test
+    public void testSubtreesBelowThresholdStayOnParentTask() {
+        Random random = new Random(5);
+        DiffOptions parallel = DiffOptions.builder().parallel(POOL).parallelThreshold(40).build();
+        for (int i = 0; i < 100; i++) {
+            JsonNode source = randomDocument(random);
+            JsonNode target = mutate(random, source);
+
+            assertEquals(JsonDiff.asJson(source, target), JsonDiff.asJson(source, target, parallel));
+        }
+    }
+
+    @Test(expected = DiffCancelledException.class)
+    public void testCancellationReachesForkedSubtrees() {
+        Random random = new Random(7);
+        JsonNode source = randomDocument(random);
+        JsonNode target = mutate(random, source);
+        DiffBudget budget = DiffBudget.unlimited();
+        budget.cancel();
+
+        JsonDiff.asJson(source, target, DiffOptions.builder().parallel(POOL).parallelThreshold(1).build(), budget);
+    }
+
+    private static JsonNode randomDocument(Random random) {
+        ObjectNode document = MAPPER.createObjectNode();
+        for (int section = 0; section < 4; section++) {
+            ObjectNode node = document.putObject("s" + section);
+            node.put("name", "section" + random.nextInt(3));
+            ArrayNode items = node.putArray("items");
+            int size = random.nextInt(8);
+            for (int id = 0; id < size; id++) {
+                items.addObject().put("id", id).put("qty", random.nextInt(3)).putArray("tags").add(random.nextInt(2));
+            }
+            ArrayNode values = node.putArray("values");
+            for (int j = random.nextInt(6); j > 0; j--) {
+                values.add(random.nextInt(4));
+            }
+        }
+        return document;
+    }
+
+    private static JsonNode mutate(Random random, JsonNode source) {
+        ObjectNode target = source.deepCopy();
+        target.fields().forEachRemaining(entry -> {
+            ObjectNode node = (ObjectNode) entry.getValue();
+            if (random.nextBoolean())
+                node.put("name", "section" + random.nextInt(3));
+            ArrayNode items = (ArrayNode) node.get("items");
+            if (items.size() > 1 && random.nextBoolean())
+                items.insert(0, items.remove(items.size() - 1));
+            if (items.size() > 0 && random.nextBoolean())
+                ((ObjectNode) items.get(random.nextInt(items.size()))).put("qty", random.nextInt(3));
+            ArrayNode values = (ArrayNode) node.get("values");
+            if (random.nextBoolean())
+                values.add(random.nextInt(4));
+            if (values.size() > 0 && random.nextBoolean())
+                values.remove(random.nextInt(values.size()));
+        });
+        if (random.nextInt(4) == 0)
+            target.remove("s" + random.nextInt(4));
+        if (random.nextInt(4) == 0)
+            target.set("extra", source.get("s0").deepCopy());
+        return target;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ParentCacheTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testSiblingOperationsUnderDeepParent() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":{\"b\":{\"c\":{\"x\":1,\"y\":2}}}}");
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/a/b/c/x\",\"value\":10}," +
+                "{\"op\":\"add\",\"path\":\"/a/b/c/z\",\"value\":{\"n\":3}}," +
+                "{\"op\":\"add\",\"path\":\"/a/b/c/z/m\",\"value\":4}," +
+                "{\"op\":\"remove\",\"path\":\"/a/b/c/y\"}]");
+
+        assertEquals(MAPPER.readTree("{\"a\":{\"b\":{\"c\":{\"x\":10,\"z\":{\"n\":3,\"m\":4}}}}}"),
+                JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testArrayRemovalAboveCachedParent() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"list\":[{\"v\":0},{\"v\":1},{\"v\":2}]}");
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/list/1/v\",\"value\":10}," +
+                "{\"op\":\"remove\",\"path\":\"/list/0\"}," +
+                "{\"op\":\"replace\",\"path\":\"/list/1/v\",\"value\":20}]");
+
+        assertEquals(MAPPER.readTree("{\"list\":[{\"v\":10},{\"v\":20}]}"), JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testReplacedParentIsResolvedAgain() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":{\"b\":{\"x\":1}}}");
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/a/b/y\",\"value\":2}," +
+                "{\"op\":\"replace\",\"path\":\"/a/b\",\"value\":{}}," +
+                "{\"op\":\"add\",\"path\":\"/a/b/z\",\"value\":3}," +
+                "{\"op\":\"replace\",\"path\":\"\",\"value\":{\"a\":{\"b\":{}}}}," +
+                "{\"op\":\"add\",\"path\":\"/a/b/w\",\"value\":4}]");
+
+        assertEquals(MAPPER.readTree("{\"a\":{\"b\":{\"w\":4}}}"), JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testChangedKeyIsResolvedAgain() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"items\":[{\"id\":1},{\"id\":2}]}");
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/items/id=2/v\",\"value\":true}," +
+                "{\"op\":\"replace\",\"path\":\"/items/0/id\",\"value\":2}," +
+                "{\"op\":\"replace\",\"path\":\"/items/1/id\",\"value\":3}," +
+                "{\"op\":\"add\",\"path\":\"/items/id=2/w\",\"value\":false}]");
+
+        assertEquals(MAPPER.readTree("{\"items\":[{\"id\":2,\"w\":false},{\"id\":3,\"v\":true}]}"),
+                JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testChangeThroughKeyDropsParentFoundByIndex() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"items\":[{\"id\":1,\"x\":{\"y\":1}}]}");
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/items/0/x/y\",\"value\":2}," +
+                "{\"op\":\"replace\",\"path\":\"/items/id=1/x\",\"value\":{\"y\":5}}," +
+                "{\"op\":\"add\",\"path\":\"/items/0/x/z\",\"value\":3}]");
+        JsonNode expected = MAPPER.readTree("{\"items\":[{\"id\":1,\"x\":{\"y\":5,\"z\":3}}]}");
+
+        assertEquals(expected, JsonPatch.apply(patch, source));
+        JsonNode target = source.deepCopy();
+        JsonPatch.applyInPlace(patch, target);
+        assertEquals(expected, target);
+        assertEquals(expected, JsonPatch.applyWithSharing(patch, source));
+    }
+
+    @Test
+    public void testInsertThroughKeyDropsParentFoundByIndex() throws IOException {
+        JsonNode source = MAPPER.readTree("[{\"id\":1,\"x\":[[{}]]},{\"id\":0,\"x\":[[{}]]}]");
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/1/x/0/0/b\",\"value\":1}," +
+                "{\"op\":\"add\",\"path\":\"/id=0/x/0/0\",\"value\":null}," +
+                "{\"op\":\"copy\",\"from\":\"/1/id\",\"path\":\"/1/x/0/0/a\"}]");
+
+        try {
+            JsonPatch.apply(patch, source);
+            fail("copy into the null inserted through the key expected to fail");
+        } catch (JsonPatchApplicationException expected) {
+            // the copy must not land in the element the null shifted away
+        }
+        try {
+            JsonPatch.applyInPlace(patch, source.deepCopy());
+            fail("copy into the null inserted through the key expected to fail");
+        } catch (JsonPatchApplicationException expected) {
+            // as above
+        }
+    }
+}
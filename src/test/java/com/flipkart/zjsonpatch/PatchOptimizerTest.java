@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PatchOptimizerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] OPERATIONS = {"add", "remove", "replace", "move", "copy", "test"};
+
+    @Test
+    public void testReplacesOfOneValueAreMerged() throws IOException {
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":1},{\"op\":\"replace\",\"path\":\"/b\",\"value\":1}," +
+                "{\"op\":\"replace\",\"path\":\"/a\",\"value\":2},{\"op\":\"add\",\"path\":\"/c\",\"value\":1}," +
+                "{\"op\":\"replace\",\"path\":\"/c\",\"value\":3}]");
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":2},{\"op\":\"replace\",\"path\":\"/b\",\"value\":1}," +
+                "{\"op\":\"add\",\"path\":\"/c\",\"value\":3}]"), JsonPatch.optimize(patch));
+    }
+
+    @Test
+    public void testChangesWithinRemovedValueAreDropped() throws IOException {
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/a/x\",\"value\":1},{\"op\":\"remove\",\"path\":\"/a/y/0\"}," +
+                "{\"op\":\"replace\",\"path\":\"/b\",\"value\":1},{\"op\":\"remove\",\"path\":\"/a\"}]");
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/b\",\"value\":1},{\"op\":\"remove\",\"path\":\"/a\"}]"),
+                JsonPatch.optimize(patch));
+    }
+
+    @Test
+    public void testReplaceThatMayAddIsKeptBeforeRemove() throws IOException {
+        EnumSet<CompatibilityFlags> flags = EnumSet.of(CompatibilityFlags.ALLOW_MISSING_TARGET_OBJECT_ON_REPLACE,
+                CompatibilityFlags.FORBID_REMOVE_MISSING_OBJECT);
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/b\",\"value\":0},{\"op\":\"remove\",\"path\":\"/b\"}]");
+        JsonNode document = MAPPER.readTree("{\"x\":1}");
+
+        JsonNode optimized = JsonPatch.optimize(patch, flags);
+
+        assertEquals(patch, optimized);
+        assertEquals(document, JsonPatch.apply(optimized, document, flags));
+        assertEquals(MAPPER.readTree("[{\"op\":\"remove\",\"path\":\"/b\"}]"), JsonPatch.optimize(patch));
+    }
+
+    @Test
+    public void testChangesWithinAddedValueAreMadeToIt() throws IOException {
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":{\"list\":[]}},{\"op\":\"add\",\"path\":\"/a/list/-\",\"value\":1}," +
+                "{\"op\":\"add\",\"path\":\"/a/x\",\"value\":2},{\"op\":\"test\",\"path\":\"/a/list/0\",\"value\":1}," +
+                "{\"op\":\"remove\",\"path\":\"/a/x\"}]");
+
+        JsonNode optimized = JsonPatch.optimize(patch);
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":{\"list\":[1]}}]"), optimized);
+        assertEquals(MAPPER.readTree("{\"list\":[]}"), patch.get(0).get("value"));
+    }
+
+    @Test
+    public void testAddThenRemoveIsKeptUnlessRemovedBefore() throws IOException {
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":1},{\"op\":\"remove\",\"path\":\"/a\"}]");
+        assertEquals(patch, JsonPatch.optimize(patch));
+
+        JsonNode removedBefore = MAPPER.readTree("[{\"op\":\"remove\",\"path\":\"/a\"},{\"op\":\"add\",\"path\":\"/a\",\"value\":1}," +
+                "{\"op\":\"remove\",\"path\":\"/a\"}]");
+        assertEquals(MAPPER.readTree("[{\"op\":\"remove\",\"path\":\"/a\"}]"), JsonPatch.optimize(removedBefore));
+    }
+
+    @Test
+    public void testShiftedArrayElementsAreNotMerged() throws IOException {
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/list/1\",\"value\":1},{\"op\":\"add\",\"path\":\"/list/0\",\"value\":0}," +
+                "{\"op\":\"replace\",\"path\":\"/list/1\",\"value\":2},{\"op\":\"replace\",\"path\":\"/items/id=1/v\",\"value\":1}," +
+                "{\"op\":\"replace\",\"path\":\"/items/id=1/v\",\"value\":2}]");
+
+        assertEquals(patch, JsonPatch.optimize(patch));
+
+        JsonNode reinserted = MAPPER.readTree("[{\"op\":\"remove\",\"path\":\"/list/1\"},{\"op\":\"add\",\"path\":\"/list/1\",\"value\":1}," +
+                "{\"op\":\"replace\",\"path\":\"/list/2\",\"value\":2},{\"op\":\"remove\",\"path\":\"/list/1\"}]");
+        assertEquals(reinserted, JsonPatch.optimize(reinserted));
+    }
+
+    @Test
+    public void testAdditionsToOneObjectKeepTheirOrder() throws IOException {
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":{}},{\"op\":\"move\",\"from\":\"/b\",\"path\":\"/a/y\"}," +
+                "{\"op\":\"add\",\"path\":\"/a/z\",\"value\":1}]");
+
+        assertEquals(patch, JsonPatch.optimize(patch));
+    }
+
+    @Test
+    public void testRandomPatchesKeepTheirResult() {
+        Random random = new Random(41);
+        int shortened = 0;
+        for (EnumSet<CompatibilityFlags> flags : List.of(CompatibilityFlags.defaults(),
+                EnumSet.of(CompatibilityFlags.REMOVE_NONE_EXISTING_ARRAY_ELEMENT, CompatibilityFlags.ALLOW_MISSING_TARGET_OBJECT_ON_REPLACE),
+                EnumSet.of(CompatibilityFlags.ALLOW_MISSING_TARGET_OBJECT_ON_REPLACE, CompatibilityFlags.FORBID_REMOVE_MISSING_OBJECT))) {
+            for (int i = 0; i < 2000; i++) {
+                JsonNode document = randomDocument(random);
+                ArrayNode patch = randomPatch(random, document, flags);
+
+                JsonNode optimized = JsonPatch.optimize(patch, flags);
+
+                assertTrue(optimized.size() <= patch.size());
+                assertEquals(patch + " on " + document, JsonPatch.apply(patch, document, flags).toString(),
+                        JsonPatch.apply(optimized, document, flags).toString());
+                if (optimized.size() < patch.size())
+                    shortened++;
+            }
+        }
+        assertTrue(shortened > 1000);
+    }
+
+    // a patch that applies to document, with operations drawn at random from those that apply at each step
+    private static ArrayNode randomPatch(Random random, JsonNode document, EnumSet<CompatibilityFlags> flags) {
+        ArrayNode patch = MAPPER.createArrayNode();
+        JsonNode current = document;
+        for (int j = 2 + random.nextInt(8); j > 0; j--) {
+            List<String> paths = new ArrayList<String>();
+            collectPaths(current, "", paths);
+            ArrayNode step = MAPPER.createArrayNode();
+            ObjectNode operation = step.addObject().put("op", OPERATIONS[random.nextInt(OPERATIONS.length)]);
+            String path = randomPath(random, paths);
+            operation.put("path", path);
+            if (operation.get("op").textValue().equals("test")) {
+                JsonNode value = current.at(path);
+                operation.set("value", value.isMissingNode() ? randomValue(random, 2) : value);
+            } else {
+                operation.put("from", randomPath(random, paths));
+                operation.set("value", randomValue(random, 2));
+            }
+            try {
+                current = JsonPatch.apply(step, current, flags);
+                patch.add(operation);
+            } catch (RuntimeException e) {
+                j++;
+            }
+        }
+        return patch;
+    }
+
+    private static JsonNode randomDocument(Random random) {
+        ObjectNode document = MAPPER.createObjectNode();
+        for (int i = random.nextInt(3); i >= 0; i--) {
+            document.set("abc".substring(i, i + 1), randomValue(random, 3));
+        }
+        return document;
+    }
+
+    private static JsonNode randomValue(Random random, int depth) {
+        switch (depth == 0 ? 0 : random.nextInt(3)) {
+            case 1:
+                ObjectNode object = MAPPER.createObjectNode();
+                for (int i = random.nextInt(3); i > 0; i--) {
+                    object.set("xyz".substring(i, i + 1), randomValue(random, depth - 1));
+                }
+                return object;
+            case 2:
+                ArrayNode array = MAPPER.createArrayNode();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    array.add(randomValue(random, depth - 1));
+                }
+                return array;
+            default:
+                return MAPPER.getNodeFactory().numberNode(random.nextInt(3));
+        }
+    }
+
+    private static void collectPaths(JsonNode node, String path, List<String> paths) {
+        paths.add(path);
+        if (node.isObject()) {
+            node.fields().forEachRemaining(field -> collectPaths(field.getValue(), path + "/" + field.getKey(), paths));
+        } else if (node.isArray()) {
+            for (int i = 0; i < node.size(); i++) {
+                collectPaths(node.get(i), path + "/" + i, paths);
+            }
+        }
+    }
+
+    private static String randomPath(Random random, List<String> paths) {
+        String path = paths.get(random.nextInt(paths.size()));
+        switch (random.nextInt(9)) {
+            case 0:
+                return path + "/" + "xyz".charAt(random.nextInt(3));
+            case 1:
+                return path + "/" + random.nextInt(3);
+            case 2:
+                return path + "/-";
+            case 3:
+                return path + "/" + "xyz".charAt(random.nextInt(3)) + "=" + random.nextInt(3);
+            default:
+                return path;
+        }
+    }
+}
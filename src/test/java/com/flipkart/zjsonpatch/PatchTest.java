@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PatchTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static ArrayNode samples;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        try (InputStream resourceAsStream = PatchTest.class.getResourceAsStream("/testdata/sample.json")) {
+            samples = (ArrayNode) MAPPER.readTree(IOUtils.toString(resourceAsStream, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testPatchMatchesPatchDocument() {
+        for (EnumSet<DiffFlags> flags : List.of(DiffFlags.defaults(), DiffFlags.dontNormalizeOpIntoMoveAndCopy(),
+                EnumSet.of(DiffFlags.EMIT_TEST_OPERATIONS, DiffFlags.ADD_ORIGINAL_VALUE_ON_REPLACE,
+                        DiffFlags.OMIT_MOVE_OPERATION, DiffFlags.OMIT_COPY_OPERATION),
+                EnumSet.of(DiffFlags.ADD_EXPLICIT_REMOVE_ADD_ON_REPLACE))) {
+            DiffOptions options = DiffOptions.builder().flags(flags).build();
+            for (JsonNode sample : samples) {
+                JsonNode source = sample.get("first");
+                JsonNode target = sample.get("second");
+
+                Patch<JsonNode> patch = JsonDiff.asPatch(source, target, options);
+
+                assertEquals(JsonDiff.asJson(source, target, options), patch.toJson());
+                assertEquals(patch.toString(), target, JsonPatch.apply(patch, source));
+            }
+        }
+    }
+
+    @Test
+    public void testApplyInPlace() {
+        for (JsonNode sample : samples) {
+            JsonNode source = sample.get("first").deepCopy();
+            JsonNode target = sample.get("second");
+            if (!source.isContainerNode() || source.getNodeType() != target.getNodeType())
+                continue;
+
+            JsonPatch.applyInPlace(JsonDiff.asPatch(source, target), source);
+
+            assertEquals(target, source);
+        }
+    }
+
+    @Test
+    public void testOperationsArePreParsed() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":{\"b\":1},\"c~d\":[1,2]}");
+        JsonNode target = MAPPER.readTree("{\"a\":{\"b\":2},\"c~d\":[1,2],\"e\":[1,2]}");
+
+        Patch<JsonNode> patch = JsonDiff.asPatch(source, target, DiffOptions.builder()
+                .flags(EnumSet.of(DiffFlags.ADD_ORIGINAL_VALUE_ON_REPLACE)).build());
+
+        assertEquals(2, patch.size());
+        PatchOperation<JsonNode> replace = patch.getOperations().get(0);
+        assertEquals(Operation.REPLACE, replace.getOperation());
+        assertEquals(JsonPointer.ROOT.append("a").append("b"), replace.getPath());
+        assertEquals(MAPPER.getNodeFactory().numberNode(2), replace.getValue());
+        assertEquals(MAPPER.getNodeFactory().numberNode(1), replace.getFromValue());
+        assertNull(replace.getFrom());
+        PatchOperation<JsonNode> copy = patch.getOperations().get(1);
+        assertEquals(Operation.COPY, copy.getOperation());
+        assertEquals("/c~0d", copy.getFrom().toString());
+        assertEquals("/e", copy.getPath().toString());
+        assertNull(copy.getValue());
+    }
+
+    @Test
+    public void testApplyingDoesNotShareValuesWithPatch() throws IOException {
+        JsonNode source = MAPPER.readTree("{}");
+        JsonNode target = MAPPER.readTree("{\"a\":{\"b\":1}}");
+        Patch<JsonNode> patch = JsonDiff.asPatch(source, target);
+
+        ObjectNode first = (ObjectNode) JsonPatch.apply(patch, source);
+        ((ObjectNode) first.get("a")).put("b", 2);
+
+        assertEquals(target, JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testEqualDocumentsGiveEmptyPatch() throws IOException {
+        JsonNode source = MAPPER.readTree("[1,{\"a\":null}]");
+
+        Patch<JsonNode> patch = JsonDiff.asPatch(source, source.deepCopy());
+
+        assertTrue(patch.isEmpty());
+        assertEquals(MAPPER.createArrayNode(), patch.toJson());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testOperationsAreUnmodifiable() throws IOException {
+        Patch<JsonNode> patch = JsonDiff.asPatch(MAPPER.readTree("[1]"), MAPPER.readTree("[2]"));
+
+        patch.getOperations().remove(0);
+    }
+
+    @Test(expected = JsonPatchApplicationException.class)
+    public void testFailedOperationIsReported() throws IOException {
+        Patch<JsonNode> patch = JsonDiff.asPatch(MAPPER.readTree("{\"a\":{\"b\":1}}"), MAPPER.readTree("{\"a\":{\"b\":2}}"));
+
+        JsonPatch.apply(patch, MAPPER.readTree("{}"));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PatchWriterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static ArrayNode samples;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        try (InputStream resourceAsStream = PatchWriterTest.class.getResourceAsStream("/testdata/sample.json")) {
+            samples = (ArrayNode) MAPPER.readTree(IOUtils.toString(resourceAsStream, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testWrittenPatchEqualsTreePatch() throws IOException {
+        for (EnumSet<DiffFlags> flags : List.of(DiffFlags.defaults(), DiffFlags.dontNormalizeOpIntoMoveAndCopy(),
+                EnumSet.of(DiffFlags.EMIT_TEST_OPERATIONS, DiffFlags.ADD_ORIGINAL_VALUE_ON_REPLACE),
+                EnumSet.of(DiffFlags.ADD_EXPLICIT_REMOVE_ADD_ON_REPLACE))) {
+            DiffOptions options = DiffOptions.builder().flags(flags).build();
+            for (JsonNode sample : samples) {
+                JsonNode source = sample.get("first");
+                JsonNode target = sample.get("second");
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+                JsonDiff.writeTo(source, target, options, out);
+
+                assertEquals(JsonDiff.asJson(source, target, options), MAPPER.readTree(out.toByteArray()));
+            }
+        }
+    }
+
+    @Test
+    public void testPointerCharactersAreEscaped() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a/b\":1,\"c~d\":{\"e=f\":[1]},\"\":true}");
+        JsonNode target = MAPPER.readTree("{\"a/b\":2,\"c~d\":{\"e=f\":[1,2]},\"\":false}");
+        StringWriter out = new StringWriter();
+
+        try (JsonGenerator generator = new JsonFactory().createGenerator(out)) {
+            JsonDiff.writeTo(source, target, DiffFlags.defaults(), generator);
+        }
+
+        JsonNode patch = MAPPER.readTree(out.toString());
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/a~1b\",\"value\":2}," +
+                "{\"op\":\"add\",\"path\":\"/c~0d/e~2f/1\",\"value\":2}," +
+                "{\"op\":\"replace\",\"path\":\"/\",\"value\":false}]"), patch);
+        assertEquals(target, JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testEqualDocumentsWriteEmptyArray() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":[1,{\"b\":null}]}");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        JsonDiff.writeTo(source, source.deepCopy(), DiffOptions.defaults(), out);
+
+        assertEquals("[]", out.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SharingApplyTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testUntouchedSubtreesAreShared() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":{\"b\":{\"c\":1},\"d\":[1,2]},\"e\":{\"f\":true}}");
+        JsonNode original = source.deepCopy();
+
+        JsonNode result = JsonPatch.applyWithSharing(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/a/b/c\",\"value\":2}]"), source);
+
+        assertEquals(MAPPER.readTree("{\"a\":{\"b\":{\"c\":2},\"d\":[1,2]},\"e\":{\"f\":true}}"), result);
+        assertEquals(original, source);
+        assertNotSame(source, result);
+        assertNotSame(source.get("a"), result.get("a"));
+        assertNotSame(source.get("a").get("b"), result.get("a").get("b"));
+        assertSame(source.get("a").get("d"), result.get("a").get("d"));
+        assertSame(source.get("e"), result.get("e"));
+    }
+
+    @Test
+    public void testCopiedSubtreeIsCopiedAgainWhenChanged() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":{\"b\":[1]}}");
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"copy\",\"from\":\"/a\",\"path\":\"/c\"}," +
+                "{\"op\":\"add\",\"path\":\"/c/b/-\",\"value\":2}," +
+                "{\"op\":\"copy\",\"from\":\"/c\",\"path\":\"/d\"}," +
+                "{\"op\":\"add\",\"path\":\"/d/b/-\",\"value\":3}]");
+
+        JsonNode result = JsonPatch.applyWithSharing(patch, source);
+
+        assertEquals(MAPPER.readTree("{\"a\":{\"b\":[1]},\"c\":{\"b\":[1,2]},\"d\":{\"b\":[1,2,3]}}"), result);
+        assertEquals(MAPPER.readTree("{\"a\":{\"b\":[1]}}"), source);
+        assertSame(source.get("a"), result.get("a"));
+    }
+
+    @Test
+    public void testKeyRefPathsAreCopied() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"items\":[{\"id\":1,\"v\":1},{\"id\":2,\"v\":1}]}");
+
+        JsonNode result = JsonPatch.applyWithSharing(
+                MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/items/id=2/v\",\"value\":5}]"), source);
+
+        assertEquals(MAPPER.readTree("{\"items\":[{\"id\":1,\"v\":1},{\"id\":2,\"v\":5}]}"), result);
+        assertEquals(1, source.get("items").get(1).get("v").intValue());
+        assertSame(source.get("items").get(0), result.get("items").get(0));
+    }
+
+    @Test
+    public void testCopySourceChangedAfterwardsLeavesCopyAlone() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":{\"b\":[1]}}");
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"copy\",\"from\":\"/a\",\"path\":\"/c\"}," +
+                "{\"op\":\"add\",\"path\":\"/a/b/0\",\"value\":0}," +
+                "{\"op\":\"replace\",\"path\":\"/c/b/0\",\"value\":2}]");
+
+        JsonNode result = JsonPatch.applyWithSharing(patch, source);
+
+        assertEquals(MAPPER.readTree("{\"a\":{\"b\":[0,1]},\"c\":{\"b\":[2]}}"), result);
+        assertEquals(MAPPER.readTree("{\"a\":{\"b\":[1]}}"), source);
+    }
+
+    @Test
+    public void testMovedSubtreeIsSharedAndChangedCopy() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":{\"x\":{\"y\":[1,2]}},\"b\":{}}");
+        JsonNode patch = MAPPER.readTree("[{\"op\":\"move\",\"from\":\"/a/x\",\"path\":\"/b/x\"}," +
+                "{\"op\":\"remove\",\"path\":\"/b/x/y/0\"}]");
+
+        JsonNode result = JsonPatch.applyWithSharing(patch, source);
+
+        assertEquals(MAPPER.readTree("{\"a\":{},\"b\":{\"x\":{\"y\":[2]}}}"), result);
+        assertEquals(MAPPER.readTree("{\"a\":{\"x\":{\"y\":[1,2]}},\"b\":{}}"), source);
+    }
+
+    @Test
+    public void testPatchValueOfReplacedRootIsLeftUnchanged() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":1}");
+        JsonNode value = MAPPER.readTree("{\"b\":{\"c\":1}}");
+        JsonNode patch = MAPPER.createArrayNode()
+                .add(MAPPER.createObjectNode().put("op", "replace").put("path", "").set("value", value))
+                .add(MAPPER.readTree("{\"op\":\"add\",\"path\":\"/b/d\",\"value\":2}"));
+
+        JsonNode result = JsonPatch.compile(patch).applyWithSharing(source);
+
+        assertEquals(MAPPER.readTree("{\"b\":{\"c\":1,\"d\":2}}"), result);
+        assertEquals(MAPPER.readTree("{\"a\":1}"), source);
+        assertEquals(MAPPER.readTree("{\"b\":{\"c\":1}}"), value);
+    }
+}
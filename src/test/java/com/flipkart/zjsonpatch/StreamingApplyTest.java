@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class StreamingApplyTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testUntouchedValuesAreCopied() throws IOException {
+        String document = "{\"a\":[1,{\"b\":null}],\"c\":{\"d\":\"x\",\"e\":1.5},\"f\":true}";
+
+        assertEquals(document, applyStreaming("[{\"op\":\"replace\",\"path\":\"/c/d\",\"value\":\"x\"}]", document));
+    }
+
+    @Test
+    public void testAddedMembersAreWrittenAtTheEnd() throws IOException {
+        String patch = "[{\"op\":\"add\",\"path\":\"/z\",\"value\":1},{\"op\":\"remove\",\"path\":\"/a\"}," +
+                "{\"op\":\"add\",\"path\":\"/a\",\"value\":2},{\"op\":\"replace\",\"path\":\"/b\",\"value\":3}]";
+
+        assertEquals("{\"b\":3,\"c\":0,\"z\":1,\"a\":2}", applyStreaming(patch, "{\"a\":0,\"b\":0,\"c\":0}"));
+    }
+
+    @Test
+    public void testArrayElementsArePatchedByIndex() throws IOException {
+        String patch = "[{\"op\":\"replace\",\"path\":\"/list/1\",\"value\":\"x\"}," +
+                "{\"op\":\"add\",\"path\":\"/list/2/b\",\"value\":true},{\"op\":\"test\",\"path\":\"/list/0\",\"value\":0}]";
+
+        assertEquals("{\"list\":[0,\"x\",{\"a\":2,\"b\":true}]}", applyStreaming(patch, "{\"list\":[0,{\"a\":1},{\"a\":2}]}"));
+    }
+
+    @Test
+    public void testMoveAndCopyBetweenSubtrees() throws IOException {
+        String patch = "[{\"op\":\"move\",\"from\":\"/a/x\",\"path\":\"/b/x\"},{\"op\":\"copy\",\"from\":\"/b\",\"path\":\"/c\"}]";
+
+        assertEquals("{\"a\":{},\"b\":{\"y\":2,\"x\":1},\"c\":{\"y\":2,\"x\":1}}", applyStreaming(patch, "{\"a\":{\"x\":1},\"b\":{\"y\":2}}"));
+    }
+
+    @Test
+    public void testIndexPastEndOfArrayFails() throws IOException {
+        String patch = "[{\"op\":\"replace\",\"path\":\"/list/0\",\"value\":0},{\"op\":\"test\",\"path\":\"/list/5/a\",\"value\":0}]";
+        try {
+            applyStreaming(patch, "{\"list\":[1,2]}");
+            fail("expected index to be out of bounds");
+        } catch (JsonPatchApplicationException e) {
+            assertEquals("/list", e.getPath().toString());
+        }
+    }
+
+    @Test
+    public void testMemberRemovedAgainIsNotWritten() throws IOException {
+        String patch = "[{\"op\":\"remove\",\"path\":\"/a\"},{\"op\":\"add\",\"path\":\"/a\",\"value\":2}," +
+                "{\"op\":\"remove\",\"path\":\"/a\"}]";
+
+        assertEquals("{}", applyStreaming(patch, "{\"a\":1}"));
+        assertEquals("{\"b\":0}", applyStreaming(patch, "{\"a\":1,\"b\":0}"));
+    }
+
+    @Test
+    public void testNewMemberRemovedAndAddedAgainIsWrittenAtTheEnd() throws IOException {
+        String patch = "[{\"op\":\"add\",\"path\":\"/z\",\"value\":1},{\"op\":\"add\",\"path\":\"/y\",\"value\":2}," +
+                "{\"op\":\"remove\",\"path\":\"/z\"},{\"op\":\"add\",\"path\":\"/z\",\"value\":3}]";
+
+        assertEquals("{\"a\":0,\"y\":2,\"z\":3}", applyStreaming(patch, "{\"a\":0}"));
+    }
+
+    private static String applyStreaming(String patch, String document) throws IOException {
+        return applyStreaming(JsonPatch.compile(MAPPER.readTree(patch)), document);
+    }
+
+    private static String applyStreaming(CompiledPatch<JsonNode> patch, String document) throws IOException {
+        StringWriter output = new StringWriter();
+        try (JsonParser source = MAPPER.createParser(document);
+             JsonGenerator target = MAPPER.createGenerator(output)) {
+            JsonPatch.applyStreaming(patch, source, target);
+        }
+        return output.toString();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingJsonDiffTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static ArrayNode samples;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        try (InputStream resourceAsStream = StreamingJsonDiffTest.class.getResourceAsStream("/testdata/sample.json")) {
+            samples = (ArrayNode) MAPPER.readTree(IOUtils.toString(resourceAsStream, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static JsonNode streamingDiff(JsonNode source, JsonNode target, DiffOptions options) throws IOException {
+        try (JsonParser sourceParser = MAPPER.createParser(MAPPER.writeValueAsString(source));
+             JsonParser targetParser = MAPPER.createParser(MAPPER.writeValueAsString(target))) {
+            return JsonDiff.asJsonStreaming(sourceParser, targetParser, options);
+        }
+    }
+
+    @Test
+    public void testSamplesRoundTrip() throws IOException {
+        for (EnumSet<DiffFlags> flags : List.of(DiffFlags.defaults(), EnumSet.of(DiffFlags.EMIT_TEST_OPERATIONS),
+                EnumSet.of(DiffFlags.ADD_EXPLICIT_REMOVE_ADD_ON_REPLACE))) {
+            DiffOptions options = DiffOptions.builder().flags(flags).build();
+            for (JsonNode sample : samples) {
+                JsonNode source = sample.get("first");
+                JsonNode target = sample.get("second");
+
+                JsonNode patch = streamingDiff(source, target, options);
+
+                assertEquals(patch.toString(), target, JsonPatch.apply(patch, source));
+            }
+        }
+    }
+
+    @Test
+    public void testEqualPrefixProducesNoOperations() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":{\"b\":[1,2,{\"c\":true}]},\"d\":\"x\"}");
+        JsonNode target = MAPPER.readTree("{\"a\":{\"b\":[1,2,{\"c\":true}]},\"d\":\"y\"}");
+
+        JsonNode patch = streamingDiff(source, target, DiffOptions.defaults());
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/d\",\"value\":\"y\"}]"), patch);
+    }
+
+    @Test
+    public void testReorderedFieldsAreMatchedByName() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":1,\"b\":{\"x\":1},\"c\":3}");
+        JsonNode target = MAPPER.readTree("{\"c\":4,\"a\":1,\"b\":{\"x\":2},\"e\":5}");
+
+        JsonNode patch = streamingDiff(source, target, DiffOptions.defaults());
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/c\",\"value\":4}," +
+                "{\"op\":\"replace\",\"path\":\"/b/x\",\"value\":2}," +
+                "{\"op\":\"add\",\"path\":\"/e\",\"value\":5}]"), patch);
+    }
+
+    @Test
+    public void testArraysAreComparedByPosition() throws IOException {
+        JsonNode source = MAPPER.readTree("[1,2,3,4]");
+        JsonNode target = MAPPER.readTree("[1,5,3]");
+
+        JsonNode patch = streamingDiff(source, target, DiffOptions.defaults());
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/1\",\"value\":5}," +
+                "{\"op\":\"remove\",\"path\":\"/3\"}]"), patch);
+    }
+
+    @Test
+    public void testKeyedArraysUseTreeDiff() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"items\":[{\"id\":1},{\"id\":2,\"v\":1}]}");
+        JsonNode target = MAPPER.readTree("{\"items\":[{\"id\":2,\"v\":2},{\"id\":1}]}");
+        DiffOptions options = DiffOptions.builder().arrayIdentityField("/items", "id").build();
+
+        JsonNode patch = streamingDiff(source, target, options);
+
+        assertEquals(JsonDiff.asJson(source, target, options), patch);
+    }
+
+    @Test
+    public void testOperationsAreHandedOutAsTheyAreFound() throws IOException {
+        List<JsonNode> operations = new ArrayList<JsonNode>();
+        try (JsonParser source = MAPPER.createParser("{\"a\":1,\"b\":2}");
+             JsonParser target = MAPPER.createParser("{\"a\":2,\"b\":3}")) {
+            JsonDiff.asJsonStreaming(source, target, DiffOptions.defaults(), operations::add);
+        }
+
+        assertEquals(2, operations.size());
+        assertEquals("/a", operations.get(0).get("path").textValue());
+        assertEquals("/b", operations.get(1).get("path").textValue());
+    }
+
+    @Test
+    public void testParserWithoutCodecAndEmptyInputs() throws IOException {
+        try (JsonParser source = MAPPER.getFactory().copy().setCodec(null).createParser("");
+             JsonParser target = MAPPER.getFactory().copy().setCodec(null).createParser("{\"a\":[1]}")) {
+            assertEquals(MAPPER.readTree("[{\"op\":\"add\",\"path\":\"\",\"value\":{\"a\":[1]}}]"),
+                    JsonDiff.asJsonStreaming(source, target));
+        }
+    }
+
+    @Test
+    public void testRandomDocumentsRoundTrip() throws IOException {
+        Random random = new Random(23);
+        for (int i = 0; i < 300; i++) {
+            JsonNode source = randomValue(random, 3);
+            JsonNode target = randomValue(random, 3);
+
+            JsonNode patch = streamingDiff(source, target, DiffOptions.defaults());
+
+            assertEquals(patch.toString(), target, JsonPatch.apply(patch, source));
+        }
+    }
+
+    private static JsonNode randomValue(Random random, int depth) {
+        int kind = depth == 0 ? 2 + random.nextInt(2) : random.nextInt(4);
+        switch (kind) {
+            case 0:
+                ObjectNode object = MAPPER.createObjectNode();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    object.set("f" + random.nextInt(5), randomValue(random, depth - 1));
+                }
+                return object;
+            case 1:
+                ArrayNode array = MAPPER.createArrayNode();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    array.add(randomValue(random, depth - 1));
+                }
+                return array;
+            case 2:
+                return MAPPER.getNodeFactory().numberNode(random.nextInt(3));
+            default:
+                return MAPPER.getNodeFactory().textNode("s" + random.nextInt(3));
+        }
+    }
+}
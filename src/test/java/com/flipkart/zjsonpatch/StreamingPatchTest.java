@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class StreamingPatchTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testStreamedPatchEqualsTreePatch() throws IOException {
+        ObjectNode source = MAPPER.createObjectNode();
+        ArrayNode patch = MAPPER.createArrayNode();
+        for (int i = 0; i < 500; i++) {
+            source.put("f" + i, i);
+            patch.addObject().put("op", "replace").put("path", "/f" + i).putObject("value").putArray("v").add(i);
+            if (i % 10 == 0)
+                patch.addObject().put("op", "move").put("from", "/f" + i).put("path", "/g" + i);
+        }
+        patch.addObject().put("op", "test").put("path", "/f1").putObject("value").putArray("v").add(1);
+        byte[] bytes = MAPPER.writeValueAsBytes(patch);
+
+        try (JsonParser parser = MAPPER.createParser(new ByteArrayInputStream(bytes))) {
+            assertEquals(JsonPatch.apply(patch, source), JsonPatch.apply(parser, source));
+        }
+    }
+
+    @Test
+    public void testParserIsLeftOnEndOfPatch() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":1}");
+        try (JsonParser parser = MAPPER.createParser("[{\"op\":\"remove\",\"path\":\"/a\"}] {\"next\":true}")) {
+            assertEquals(JsonToken.START_ARRAY, parser.nextToken());
+
+            assertEquals(MAPPER.readTree("{}"), JsonPatch.apply(parser, source));
+
+            assertEquals(JsonToken.END_ARRAY, parser.currentToken());
+            assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+            assertEquals(MAPPER.readTree("{\"next\":true}"), MAPPER.readTree(parser));
+        }
+    }
+
+    @Test
+    public void testInPlaceKeepsOperationsBeforeFailure() throws IOException {
+        JsonNode document = MAPPER.readTree("{\"a\":1,\"b\":2}");
+        String patch = "[{\"op\":\"remove\",\"path\":\"/a\"},{\"op\":\"remove\",\"path\":\"/b\"}," +
+                "{\"op\":\"test\",\"path\":\"/c\",\"value\":3},{\"op\":\"add\",\"path\":\"/d\",\"value\":4}]";
+
+        try (JsonParser parser = MAPPER.createParser(patch)) {
+            JsonPatch.applyInPlace(parser, document);
+            fail("expected test operation to fail");
+        } catch (JsonPatchApplicationException e) {
+            assertEquals(MAPPER.readTree("{}"), document);
+        }
+    }
+
+    @Test
+    public void testInvalidOperationIsReportedWhenReached() throws IOException {
+        JsonNode document = MAPPER.readTree("{\"a\":1}");
+        try (JsonParser parser = MAPPER.createParser("[{\"op\":\"remove\",\"path\":\"/a\"},{\"op\":\"add\",\"path\":\"/b\"}]")) {
+            JsonPatch.applyInPlace(parser, document);
+            fail("expected missing value to be reported");
+        } catch (InvalidJsonPatchException e) {
+            assertNull(document.get("a"));
+        }
+    }
+
+    @Test(expected = InvalidJsonPatchException.class)
+    public void testNonArrayPatchFails() throws IOException {
+        try (JsonParser parser = MAPPER.createParser("{\"op\":\"remove\",\"path\":\"/a\"}")) {
+            JsonPatch.apply(parser, MAPPER.readTree("{\"a\":1}"));
+        }
+    }
+
+    @Test
+    public void testEmptyPatch() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"a\":1}");
+        try (JsonParser parser = MAPPER.createParser("[]".getBytes(StandardCharsets.UTF_8))) {
+            assertEquals(source, JsonPatch.apply(parser, source));
+        }
+    }
+}
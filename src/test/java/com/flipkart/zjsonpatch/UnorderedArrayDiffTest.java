@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 flipkart.com zjsonpatch.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.zjsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class UnorderedArrayDiffTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final DiffOptions UNORDERED_TAGS = DiffOptions.builder()
+            .unorderedArray("/tags")
+            .build();
+
+    @Test
+    public void testReorderedArrayProducesNoOperations() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"tags\":[\"a\",\"b\",{\"c\":1},\"b\"]}");
+        JsonNode target = MAPPER.readTree("{\"tags\":[{\"c\":1},\"b\",\"b\",\"a\"]}");
+
+        assertEquals(0, JsonDiff.asJson(source, target, UNORDERED_TAGS).size());
+    }
+
+    @Test
+    public void testOnlyRealAdditionsAndRemovalsAreEmitted() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"tags\":[\"a\",\"b\",\"b\",\"c\"]}");
+        JsonNode target = MAPPER.readTree("{\"tags\":[\"d\",\"c\",\"b\",\"a\"]}");
+
+        JsonNode patch = JsonDiff.asJson(source, target, UNORDERED_TAGS);
+
+        assertEquals(MAPPER.readTree("[{\"op\":\"remove\",\"path\":\"/tags/2\"}," +
+                "{\"op\":\"add\",\"path\":\"/tags/3\",\"value\":\"d\"}]"), patch);
+        assertEquals(MAPPER.readTree("{\"tags\":[\"a\",\"b\",\"c\",\"d\"]}"), JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testOtherArraysKeepTheirOrder() throws IOException {
+        JsonNode source = MAPPER.readTree("{\"tags\":[1,2],\"list\":[1,2]}");
+        JsonNode target = MAPPER.readTree("{\"tags\":[2,1],\"list\":[2,1]}");
+
+        JsonNode patch = JsonDiff.asJson(source, target, UNORDERED_TAGS);
+
+        assertEquals(MAPPER.readTree("{\"tags\":[1,2],\"list\":[2,1]}"), JsonPatch.apply(patch, source));
+    }
+
+    @Test
+    public void testRandomMultisetsRoundTrip() {
+        Random random = new Random(17);
+        for (EnumSet<DiffFlags> flags : List.of(DiffFlags.defaults(), EnumSet.of(DiffFlags.EMIT_TEST_OPERATIONS))) {
+            DiffOptions options = DiffOptions.builder().flags(flags).unorderedArray("/tags").build();
+            for (int i = 0; i < 300; i++) {
+                JsonNode source = MAPPER.createObjectNode().set("tags", randomTags(random));
+                JsonNode target = MAPPER.createObjectNode().set("tags", randomTags(random));
+
+                JsonNode patch = JsonDiff.asJson(source, target, options);
+                JsonNode result = JsonPatch.apply(patch, source);
+
+                assertEquals(sorted(target.get("tags")), sorted(result.get("tags")));
+            }
+        }
+    }
+
+    private static ArrayNode randomTags(Random random) {
+        ArrayNode tags = MAPPER.createArrayNode();
+        int size = random.nextInt(10);
+        for (int i = 0; i < size; i++) {
+            tags.add("t" + random.nextInt(5));
+        }
+        return tags;
+    }
+
+    private static List<String> sorted(JsonNode array) {
+        List<String> values = new ArrayList<String>();
+        for (JsonNode value : array) {
+            values.add(value.textValue());
+        }
+        values.sort(null);
+        return values;
+    }
+}